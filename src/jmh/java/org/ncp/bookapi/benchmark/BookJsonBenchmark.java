@@ -0,0 +1,85 @@
+package org.ncp.bookapi.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.ncp.bookapi.entities.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing {@link Book} JSON, as the controller does for a single book and for a page of books.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookJsonBenchmark {
+
+    @Param({"100", "10000"})
+    public int listSize;
+
+    // configured like Spring Boot's mapper: java.time support, ISO-8601 timestamps
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private ObjectWriter writer;
+    private Book book;
+    private List<Book> books;
+    private byte[] bookJson;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        writer = objectMapper.writer();
+        book = book(1);
+        books = new ArrayList<>(listSize);
+        for (int i = 1; i <= listSize; i++) {
+            books.add(book(i));
+        }
+        bookJson = writer.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public byte[] writeBook() throws JsonProcessingException {
+        return writer.writeValueAsBytes(book);
+    }
+
+    @Benchmark
+    public byte[] writeBookList() throws JsonProcessingException {
+        return writer.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public Book readBook() throws IOException {
+        return objectMapper.readValue(bookJson, Book.class);
+    }
+
+    private static Book book(long id) {
+        Book book = new Book("The Lord of the Rings, volume " + id, "J. R. R. Tolkien");
+        book.setId(id);
+        book.setVersion(0L);
+        book.setLastModified(Instant.parse("2024-05-01T12:00:00Z"));
+        return book;
+    }
+}
@@ -0,0 +1,106 @@
+package org.ncp.bookapi.benchmark;
+
+import org.ncp.bookapi.Main;
+import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.services.BookService.BookService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * {@link BookService} reads against an in-memory H2 seeded with {@code catalogSize} books,
+ * through the real Spring context (repositories, caches and indexes) and straight to the service.
+ * The context is the whole application, since its security configuration needs the servlet web layer;
+ * the server listens on a random port and is not used.
+ *
+ * Lookups pick a random id, so once the catalog outgrows the book cache most of them reach the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    static final String[] WORDS = {
+            "harry", "potter", "lord", "rings", "shadow", "garden", "river", "winter", "silent", "empire",
+            "crown", "glass", "night", "ocean", "stone", "dragon", "letters", "house", "island", "machine"
+    };
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private BookService bookService;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(Main.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark-" + catalogSize + ";DB_CLOSE_DELAY=-1",
+                        "spring.h2.console.enabled=false",
+                        "logging.level.root=WARN")
+                .run();
+        bookService = context.getBean(BookService.class);
+        bookService.createBooks(books(catalogSize));
+        firstId = bookService.getBooksAfter(0, 1).get(0).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Book> getBookById() {
+        return bookService.getBookById(firstId + ThreadLocalRandom.current().nextLong(catalogSize));
+    }
+
+    @Benchmark
+    public List<Book> getBooksAfter() {
+        return bookService.getBooksAfter(firstId + ThreadLocalRandom.current().nextLong(catalogSize), 100);
+    }
+
+    @Benchmark
+    public List<Book> getAllBooksByAuthor() {
+        return bookService.getAllBooksByAuthor("Author " + ThreadLocalRandom.current().nextInt(catalogSize / 10));
+    }
+
+    @Benchmark
+    public List<Book> searchTitle() {
+        return bookService.getAllBooksByKeywordInTitle(WORDS[ThreadLocalRandom.current().nextInt(WORDS.length)], 0, 50);
+    }
+
+    /**
+     * Deterministic titles of three words, ten books per author.
+     */
+    static Iterator<Book> books(int count) {
+        return LongStream.range(0, count)
+                .mapToObj(i -> new Book(
+                        WORDS[(int) (i % WORDS.length)] + " " + WORDS[(int) (i / 7 % WORDS.length)] + " " + i,
+                        "Author " + i / 10))
+                .iterator();
+    }
+}
@@ -0,0 +1,117 @@
+package org.ncp.bookapi.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.ncp.bookapi.entities.Book;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A page of books as it goes over the wire to sync clients: JSON against CBOR, each plain and gzipped.
+ *
+ * {@code encode} and {@code decode} measure the CPU on each side; the bytes on the wire of each
+ * combination are printed at the end of the trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookWireFormatBenchmark {
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    @Param({"1000"})
+    public int pageSize;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<Book> page;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper mapper = switch (format) {
+            case "json" -> JsonMapper.builder()
+                    .findAndAddModules()
+                    .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                    .build();
+            case "cbor" -> CBORMapper.builder()
+                    .findAndAddModules()
+                    .build();
+            default -> throw new IllegalArgumentException(format);
+        };
+        writer = mapper.writerFor(Book[].class);
+        reader = mapper.readerFor(Book[].class);
+        page = new ArrayList<>(pageSize);
+        for (int i = 1; i <= pageSize; i++) {
+            Book book = new Book(BookServiceBenchmark.WORDS[i % BookServiceBenchmark.WORDS.length] + " and the "
+                    + BookServiceBenchmark.WORDS[i / 7 % BookServiceBenchmark.WORDS.length] + ", volume " + i,
+                    "Author " + i / 10);
+            book.setId((long) i);
+            book.setVersion(0L);
+            book.setLastModified(Instant.parse("2024-05-01T12:00:00Z").plusSeconds(i));
+            page.add(book);
+        }
+        encoded = encode();
+    }
+
+    @TearDown(Level.Trial)
+    public void printWireSize() {
+        System.out.printf("%nwire bytes: format=%s gzip=%s books=%d bytes=%d (%.1f per book)%n",
+                format, gzip, pageSize, encoded.length, (double) encoded.length / pageSize);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        byte[] bytes = writer.writeValueAsBytes(page.toArray(new Book[0]));
+        if (!gzip) {
+            return bytes;
+        }
+        var out = new ByteArrayOutputStream(bytes.length / 4);
+        try (var gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Book[] decode() throws IOException {
+        if (!gzip) {
+            return reader.readValue(encoded);
+        }
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(encoded))) {
+            return reader.readValue(in);
+        }
+    }
+}
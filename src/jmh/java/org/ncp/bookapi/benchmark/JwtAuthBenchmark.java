@@ -0,0 +1,95 @@
+package org.ncp.bookapi.benchmark;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.ncp.bookapi.auth.JwtUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.Key;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of authenticating a bearer token in {@code JwtAuthFilter}.
+ *
+ * {@code previousFilterPath} reproduces the old behaviour: three full parses, each with a freshly built parser.
+ * {@code singleParse} is one verification with the shared parser, which is what a token costs the first time.
+ * {@code cachedClaims} is a repeat request with a token that has been seen before.
+ * {@code generateToken} is the signing cost paid by every login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private final Key previousKey = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+
+    private JwtUtil jwtUtil;
+    private String token;
+    private String previousToken;
+    private List<SimpleGrantedAuthority> authorities;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil();
+        authorities = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+        token = jwtUtil.generateToken("testuser", authorities);
+
+        Date now = new Date();
+        previousToken = Jwts.builder()
+                .setSubject("testuser")
+                .setIssuedAt(now)
+                .setExpiration(new Date(now.getTime() + 3600000))
+                .signWith(previousKey)
+                .compact();
+    }
+
+    @Benchmark
+    public boolean previousFilterPath() {
+        // extractUsername, then validateToken -> extractUsername + isTokenExpired
+        String username = previousParse(previousToken).getSubject();
+        return previousParse(previousToken).getSubject().equals(username)
+                && !previousParse(previousToken).getExpiration().before(new Date());
+    }
+
+    @Benchmark
+    public boolean singleParse() {
+        Claims claims = jwtUtil.parseClaims(token);
+        return jwtUtil.validateToken(claims) && !jwtUtil.extractAuthorities(claims).isEmpty();
+    }
+
+    @Benchmark
+    public boolean cachedClaims() {
+        Claims claims = jwtUtil.getVerifiedClaims(token);
+        return jwtUtil.validateToken(claims) && !jwtUtil.extractAuthorities(claims).isEmpty();
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken("testuser", authorities);
+    }
+
+    private Claims previousParse(String jwt) {
+        return Jwts.parserBuilder()
+                .setSigningKey(previousKey)
+                .build()
+                .parseClaimsJws(jwt)
+                .getBody();
+    }
+}
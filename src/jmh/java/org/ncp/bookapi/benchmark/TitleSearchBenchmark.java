@@ -0,0 +1,100 @@
+package org.ncp.bookapi.benchmark;
+
+import org.ncp.bookapi.search.TitleIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TitleIndex} query latency on its own, with up to a million titles.
+ *
+ * Titles are three to five words drawn from a vocabulary of generated words, so trigrams are spread
+ * like in a real catalog rather than concentrated on a handful of words. {@code fuzzySearch} asks for
+ * two words of an indexed title, each with one typo (a dropped, doubled or swapped letter);
+ * {@code exactSearch} asks for one correctly spelled word, for comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TitleSearchBenchmark {
+
+    private static final String[] SYLLABLES = {
+            "ka", "lo", "mi", "ra", "ten", "vor", "shi", "dun", "el", "gar", "po", "ter", "har", "ry", "wen", "dra",
+            "li", "mo", "sa", "nor", "tha", "quin", "bel", "ro", "fi", "zan", "cor", "u", "ith", "mar", "ne", "sto"
+    };
+    private static final int VOCABULARY_SIZE = 20_000;
+    private static final int QUERIES = 1024;
+
+    @Param({"100000", "1000000"})
+    public int titleCount;
+
+    private TitleIndex index;
+    private String[] words;
+    private String[] fuzzyQueries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        words = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = word.toString();
+        }
+
+        index = new TitleIndex();
+        fuzzyQueries = new String[QUERIES];
+        for (long id = 1; id <= titleCount; id++) {
+            String[] title = new String[3 + random.nextInt(3)];
+            for (int w = 0; w < title.length; w++) {
+                title[w] = words[random.nextInt(words.length)];
+            }
+            index.add(id, String.join(" ", title));
+            if (id <= QUERIES) {
+                fuzzyQueries[(int) id - 1] = typo(title[0], random) + " " + typo(title[1], random);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Long> fuzzySearch() {
+        return index.fuzzySearch(fuzzyQueries[ThreadLocalRandom.current().nextInt(QUERIES)], 0, 50);
+    }
+
+    @Benchmark
+    public List<Long> exactSearch() {
+        return index.search(words[ThreadLocalRandom.current().nextInt(words.length)], 0, 50);
+    }
+
+    private static String typo(String word, Random random) {
+        if (word.length() < 4) {
+            return word;
+        }
+        int at = 1 + random.nextInt(word.length() - 2);
+        return switch (random.nextInt(3)) {
+            case 0 -> word.substring(0, at) + word.substring(at + 1);
+            case 1 -> word.substring(0, at) + word.charAt(at) + word.substring(at);
+            default -> word.substring(0, at - 1) + word.charAt(at) + word.charAt(at - 1) + word.substring(at + 1);
+        };
+    }
+}
@@ -0,0 +1,180 @@
+package org.ncp.bookapi.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop HTTP load driver for a running instance of the API.
+ *
+ * Each of {@code clients} threads sends a request, waits for the response and sends the next one,
+ * cycling through {@code paths}, for {@code durationSeconds}. The result is printed as one JSON object
+ * (throughput, error count and latency percentiles), so runs against the default platform-thread
+ * configuration and the {@code virtual-threads} profile can be compared side by side.
+ *
+ * Run with {@code ./gradlew loadTest -DbaseUrl=http://localhost:8080 -Dclients=500 -DdurationSeconds=30}.
+ *
+ * With {@code -DloginClients=N}, N more threads log in as {@code username}/{@code password} in a loop at the
+ * same time, and their latencies are reported separately under {@code login}; comparing the read percentiles
+ * with and without them shows what logins cost everyone else. Answers 429 and 503 are counted as
+ * {@code rejected}, not errors. Start the server with {@code --bookapi.rate-limit.enabled=false}, or the
+ * per-address budgets will reject most of the load.
+ */
+public class BookApiLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("baseUrl", "http://localhost:8080");
+        int clients = Integer.getInteger("clients", 200);
+        int durationSeconds = Integer.getInteger("durationSeconds", 30);
+        int warmupSeconds = Integer.getInteger("warmupSeconds", 5);
+        String[] paths = System.getProperty("paths", "/api/books?limit=100,/api/books/1,/api/books/search-title?keyword=the")
+                .split(",");
+        int loginClients = Integer.getInteger("loginClients", 0);
+        String username = System.getProperty("username", "testuser");
+        String password = System.getProperty("password", "testpass");
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        List<HttpRequest> requests = new ArrayList<>(paths.length);
+        for (String path : paths) {
+            requests.add(HttpRequest.newBuilder(URI.create(baseUrl + path.trim()))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build());
+        }
+
+        List<HttpRequest> logins = List.of(HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"username\":\"" + username + "\",\"password\":\"" + password + "\"}"))
+                .build());
+
+        if (warmupSeconds > 0) {
+            run(client, requests, clients, logins, loginClients, warmupSeconds);
+        }
+        Result[] results = run(client, requests, clients, logins, loginClients, durationSeconds);
+        String json = results[0].toJson(baseUrl, clients, durationSeconds);
+        if (loginClients > 0) {
+            json = json.substring(0, json.length() - 1)
+                    + ",\"loginClients\":" + loginClients + ",\"login\":" + results[1].toJson(durationSeconds) + "}";
+        }
+        System.out.println(json);
+    }
+
+    /**
+     * Returns the results of the read clients, then of the login clients.
+     */
+    private static Result[] run(HttpClient client, List<HttpRequest> requests, int clients,
+                                List<HttpRequest> logins, int loginClients, int durationSeconds) throws Exception {
+        long deadline = System.nanoTime() + Duration.ofSeconds(durationSeconds).toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(clients + loginClients);
+        try {
+            List<Future<Worker>> futures = new ArrayList<>(clients + loginClients);
+            for (int i = 0; i < clients + loginClients; i++) {
+                Worker worker = new Worker(client, i < clients ? requests : logins, i, deadline);
+                futures.add(workers.submit(worker::call));
+            }
+            Result[] results = {new Result(), new Result()};
+            for (int i = 0; i < futures.size(); i++) {
+                results[i < clients ? 0 : 1].add(futures.get(i).get());
+            }
+            return results;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static final class Worker {
+
+        private final HttpClient client;
+        private final List<HttpRequest> requests;
+        private final long deadline;
+        private int next;
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private long rejected;
+
+        Worker(HttpClient client, List<HttpRequest> requests, int offset, long deadline) {
+            this.client = client;
+            this.requests = requests;
+            this.next = offset;
+            this.deadline = deadline;
+        }
+
+        Worker call() {
+            while (System.nanoTime() < deadline) {
+                HttpRequest request = requests.get(next++ % requests.size());
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() == 429 || response.statusCode() == 503) {
+                        rejected++;
+                    } else if (response.statusCode() >= 400) {
+                        errors++;
+                    }
+                } catch (Exception ex) {
+                    errors++;
+                }
+                record(System.nanoTime() - start);
+            }
+            return this;
+        }
+
+        private void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+    }
+
+    private static final class Result {
+
+        private long[] latencies = new long[0];
+        private long errors;
+        private long rejected;
+
+        void add(Worker worker) {
+            int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + worker.count);
+            System.arraycopy(worker.latencies, 0, latencies, offset, worker.count);
+            errors += worker.errors;
+            rejected += worker.rejected;
+        }
+
+        String toJson(String baseUrl, int clients, int durationSeconds) {
+            return String.format(Locale.ROOT, "{\"baseUrl\":\"%s\",\"clients\":%d,\"durationSeconds\":%d,%s",
+                    baseUrl, clients, durationSeconds, toJson(durationSeconds).substring(1));
+        }
+
+        String toJson(int durationSeconds) {
+            Arrays.sort(latencies);
+            return String.format(Locale.ROOT,
+                    "{\"requests\":%d,\"errors\":%d,\"rejected\":%d,"
+                            + "\"throughputPerSecond\":%.1f,\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f,\"maxMs\":%.3f}",
+                    latencies.length, errors, rejected,
+                    (double) latencies.length / durationSeconds,
+                    percentile(0.50), percentile(0.99), percentile(0.999), percentile(1.0));
+        }
+
+        private double percentile(double quantile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(quantile * latencies.length) - 1;
+            return latencies[Math.max(0, index)] / 1_000_000.0;
+        }
+    }
+}
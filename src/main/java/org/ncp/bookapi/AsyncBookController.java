@@ -0,0 +1,204 @@
+package org.ncp.bookapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.services.BookService.AsyncBookService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * Async variant of the {@link BookController} reads, for many slow clients: the request thread is released
+ * as soon as the query is handed to the bounded database pool, and the response is written when it completes.
+ * A saturated pool answers 503.
+ *
+ * The NDJSON stream writes its pages on a small pool of its own, so that clients reading slowly hold
+ * neither database threads nor the threads of other async work such as the change feed. At most
+ * {@code bookapi.async.max-streams} streams run at a time; one more answers 503.
+ */
+@Validated
+@RestController
+@RequestMapping("/api/async/books")
+public class AsyncBookController implements DisposableBean {
+
+    static final int STREAM_PAGE_SIZE = 500;
+
+    private final AsyncBookService asyncBookService;
+    private final ObjectMapper objectMapper;
+    private final Executor writeExecutor;
+    private final Semaphore streams;
+    private final Duration streamTimeout;
+
+    @Autowired
+    public AsyncBookController(AsyncBookService asyncBookService, ObjectMapper objectMapper,
+                               @Value("${bookapi.async.stream-writers:16}") int writers,
+                               @Value("${bookapi.async.max-streams:256}") int maxStreams,
+                               @Value("${bookapi.async.stream-timeout:30m}") Duration streamTimeout) {
+        // a stream has at most one page waiting to be written, so the queue never overflows
+        this(asyncBookService, objectMapper, writePool(writers, maxStreams), maxStreams, streamTimeout);
+    }
+
+    /**
+     * Writes stream pages on {@code writeExecutor}.
+     */
+    public AsyncBookController(AsyncBookService asyncBookService, ObjectMapper objectMapper, Executor writeExecutor,
+                               int maxStreams, Duration streamTimeout) {
+        this.asyncBookService = asyncBookService;
+        this.objectMapper = objectMapper;
+        this.writeExecutor = writeExecutor;
+        this.streams = new Semaphore(maxStreams);
+        this.streamTimeout = streamTimeout;
+    }
+
+    private static ThreadPoolExecutor writePool(int writers, int maxStreams) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(writers, writers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxStreams),
+                task -> {
+                    Thread thread = new Thread(task, "stream-write-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Same keyset pagination and {@code Link} header as {@code GET /api/books}.
+     */
+    @GetMapping
+    public CompletableFuture<ResponseEntity<List<Book>>> getAllBooks(
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(1000) int limit) {
+        // the current request is only reachable from this thread
+        UriComponentsBuilder nextPage = ServletUriComponentsBuilder.fromCurrentRequest();
+        return asyncBookService.getBooksAfter(after, limit).thenApply(books -> {
+            var response = ResponseEntity.ok();
+            if (books.size() == limit) {
+                String next = nextPage
+                        .replaceQueryParam("after", books.get(books.size() - 1).getId())
+                        .replaceQueryParam("limit", limit)
+                        .toUriString();
+                response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+            return response.body(books);
+        });
+    }
+
+    /**
+     * The whole catalog as newline-delimited JSON, read in keyset pages. The next page is only read once
+     * the previous one has been written, so a slow client slows down the reads instead of filling memory,
+     * and no database connection is held while the client catches up. Writes block a thread of the stream pool.
+     * A stream still running after {@code bookapi.async.stream-timeout} is cut off and reads no further page.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> streamAllBooks() {
+        if (!streams.tryAcquire()) {
+            // no error body: the client only accepts NDJSON
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .build();
+        }
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(streamTimeout.toMillis());
+        AtomicBoolean released = new AtomicBoolean();
+        // called however the stream ends: completed, failed, timed out or dropped by the client
+        emitter.onCompletion(() -> {
+            if (released.compareAndSet(false, true)) {
+                streams.release();
+            }
+        });
+        streamPage(emitter, 0);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(emitter);
+    }
+
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<Book>> getBookById(@PathVariable("id") Long id) {
+        return asyncBookService.getBookById(id)
+                .thenApply(book -> book.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build()));
+    }
+
+    @GetMapping("/by-author")
+    public CompletableFuture<List<Book>> getAllBooksByAuthor(
+            @RequestParam("author") @NotBlank(message = "Author is required") String author) {
+        return asyncBookService.getAllBooksByAuthor(author);
+    }
+
+    @GetMapping("/search-title")
+    public CompletableFuture<List<Book>> getAllBooksByKeywordInTitle(
+            @RequestParam("keyword") @NotBlank(message = "Keyword is required") String keyword,
+            @RequestParam(value = "page", defaultValue = "0") @Min(0) int page,
+            @RequestParam(value = "size", defaultValue = "50") @Min(1) @Max(1000) int size) {
+        return asyncBookService.getAllBooksByKeywordInTitle(keyword, page, size);
+    }
+
+    private void streamPage(ResponseBodyEmitter emitter, long after) {
+        asyncBookService.getBooksAfter(after, STREAM_PAGE_SIZE)
+                // written off the database pool: a blocked write must not hold a database thread
+                .thenAcceptAsync(books -> {
+                    try {
+                        if (!books.isEmpty()) {
+                            emitter.send(encodeNdjson(books), MediaType.APPLICATION_NDJSON);
+                        }
+                    } catch (IOException ex) {
+                        // the client went away
+                        emitter.completeWithError(ex);
+                        return;
+                    } catch (IllegalStateException ex) {
+                        // the stream timed out and was completed meanwhile
+                        return;
+                    }
+                    if (books.size() < STREAM_PAGE_SIZE) {
+                        emitter.complete();
+                    } else {
+                        streamPage(emitter, books.get(books.size() - 1).getId());
+                    }
+                }, writeExecutor)
+                .exceptionally(ex -> {
+                    emitter.completeWithError(ex);
+                    return null;
+                });
+    }
+
+    @Override
+    public void destroy() {
+        if (writeExecutor instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private byte[] encodeNdjson(List<Book> books) throws IOException {
+        var out = new ByteArrayOutputStream(books.size() * 96);
+        for (Book book : books) {
+            objectMapper.writeValue(out, book);
+            out.write('\n');
+        }
+        return out.toByteArray();
+    }
+}
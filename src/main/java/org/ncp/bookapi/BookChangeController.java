@@ -0,0 +1,68 @@
+package org.ncp.bookapi;
+
+import org.ncp.bookapi.changes.ChangeFeed;
+import org.ncp.bookapi.changes.ChangesPrunedException;
+import org.ncp.bookapi.entities.BookChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Change feed for replicas: instead of diffing the whole catalog, ask for the changes after the last
+ * sequence number seen.
+ */
+@Validated
+@RestController
+@RequestMapping("/api/books/changes")
+public class BookChangeController {
+
+    private final ChangeFeed changeFeed;
+
+    @Autowired
+    public BookChangeController(ChangeFeed changeFeed) {
+        this.changeFeed = changeFeed;
+    }
+
+    /**
+     * Up to {@code limit} committed changes after {@code since}, oldest first.
+     * Call again with the {@code seq} of the last one until the list is empty.
+     * 410 Gone when some of these changes were already pruned: read the catalog again instead.
+     */
+    @GetMapping
+    public List<BookChange> getChanges(
+            @RequestParam(value = "since", defaultValue = "0") @Min(0) long since,
+            @RequestParam(value = "limit", defaultValue = "1000") @Min(1) @Max(10000) int limit) {
+        try {
+            return changeFeed.changesSince(since, limit);
+        } catch (ChangesPrunedException ex) {
+            throw new ResponseStatusException(HttpStatus.GONE, ex.getMessage());
+        }
+    }
+
+    /**
+     * Server-sent events: the changes after {@code since}, then new ones as they commit.
+     * A reconnecting {@code EventSource} resumes from its {@code Last-Event-ID}.
+     */
+    @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(
+            @RequestParam(value = "since", defaultValue = "0") @Min(0) long since,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        try {
+            return changeFeed.subscribe(lastEventId != null ? lastEventId : since);
+        } catch (ChangesPrunedException ex) {
+            throw new ResponseStatusException(HttpStatus.GONE, ex.getMessage());
+        }
+    }
+}
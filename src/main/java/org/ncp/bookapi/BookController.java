@@ -1,19 +1,44 @@
 package org.ncp.bookapi;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.ncp.bookapi.cache.BookCacheStats;
+import org.ncp.bookapi.cache.EncodedBody;
+import org.ncp.bookapi.cache.ResponseBodyCache;
 import org.ncp.bookapi.entities.Book;
 import org.ncp.bookapi.exceptions.BookNotFoundException;
+import org.ncp.bookapi.exceptions.BookVersionMismatchException;
+import org.ncp.bookapi.search.AuthorCount;
+import org.ncp.bookapi.search.TitleIndexStats;
 import org.ncp.bookapi.services.BookService.BookService;
+import org.ncp.bookapi.services.BookService.BulkInputException;
+import org.ncp.bookapi.services.BookService.BulkResult;
+import org.ncp.bookapi.services.BookService.CatalogStats;
+import org.ncp.bookapi.services.BookService.CatalogVersion;
+import org.ncp.bookapi.snapshot.CatalogSnapshotStats;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.List;
-import java.util.Optional;
+import java.util.Locale;
+import java.util.function.Supplier;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 
 /// Spring only triggers validation on method parameters
@@ -24,34 +49,177 @@ import jakarta.validation.constraints.NotBlank;
 public class BookController {
 
     private final BookService bookService;
+    private final ObjectMapper objectMapper;
+    private final ResponseBodyCache responseBodyCache;
+
+    // Upper bound on the ids of one batch lookup, so a single request cannot ask for the whole catalog
+    static final int MAX_LOOKUP_IDS = 1000;
+
+    private static final String GZIP_TAG_SUFFIX = "-gzip";
 
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, ObjectMapper objectMapper, ResponseBodyCache responseBodyCache) {
         this.bookService = bookService;
+        this.objectMapper = objectMapper;
+        this.responseBodyCache = responseBodyCache;
     }
 
+    /**
+     * Keyset pagination over the catalog: returns up to {@code limit} books with an id greater than {@code after}.
+     * When the page is full, a {@code Link: <...>; rel="next"} header points at the following page.
+     * Conditional requests against the catalog version are answered 304 without a query.
+     * Sync clients can ask for {@code Accept: application/cbor}, a binary encoding of the same page.
+     */
     @GetMapping
-    public List<Book>getAllBooks() {
-        return bookService.getAllBooks();
+    public ResponseEntity<List<Book>> getAllBooks(
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestParam(value = "limit", defaultValue = "100") @Min(1) @Max(1000) int limit,
+            WebRequest request) {
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        List<Book> books = bookService.getBooksAfter(after, limit);
+        var response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+        if (books.size() == limit) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", books.get(books.size() - 1).getId())
+                    .replaceQueryParam("limit", limit)
+                    .toUriString();
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(books);
+    }
+
+    /**
+     * Batch lookup, {@code GET /api/books?ids=1,2,3}: the books with these ids in the order asked, unknown ids
+     * left out. One round trip and at most one {@code IN} query, for the ids not already cached.
+     */
+    @GetMapping(params = "ids")
+    public List<Book> getBooksByIds(@RequestParam("ids") List<Long> ids) {
+        return bookService.getBooksByIds(checkLookupIds(ids));
+    }
+
+    /**
+     * Same as {@link #getBooksByIds(List)} with the ids in a JSON array, for lists too long for a URL.
+     */
+    @PostMapping("/lookup")
+    public List<Book> lookupBooks(@RequestBody List<Long> ids) {
+        return bookService.getBooksByIds(checkLookupIds(ids));
+    }
+
+    /**
+     * Streams the whole catalog as newline-delimited JSON, one book per line, written as rows are read.
+     * Selected with {@code Accept: application/x-ndjson}.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllBooks() {
+        StreamingResponseBody body = out -> bookService.streamAllBooks(book -> writeNdjsonLine(out, book));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
+    /**
+     * The book's version is its strong ETag; a matching {@code If-None-Match} (or an {@code If-Modified-Since}
+     * not older than the book) is answered 304 without a body.
+     * The JSON is served from the {@link ResponseBodyCache}, gzipped when the client accepts it. The gzipped
+     * bytes are another representation, so they are tagged {@code "<version>-gzip"} rather than {@code "<version>"}.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable("id") Long id)
+    public ResponseEntity<byte[]> getBookById(@PathVariable("id") Long id,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding)
     {
-        Optional<Book> book = bookService.getBookById(id);
-        return book.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        EncodedBody body = responseBodyCache.getBook(id,
+                key -> bookService.getBookById(key).map(this::encodeBook).orElse(null));
+        if (body == null) {
+            return ResponseEntity.notFound().build();
+        }
+        var response = ResponseEntity.ok();
+        if (body.lastModified() != null) {
+            response.lastModified(body.lastModified());
+        }
+        return jsonBody(response, body, acceptEncoding);
     }
 
 
+    @GetMapping("/cache/stats")
+    public BookCacheStats getBookCacheStats() {
+        return bookService.getBookCacheStats();
+    }
+
     @GetMapping("/by-author")
-    public ResponseEntity<List<Book>> getAllBooksByAuthor(@RequestParam("author") @NotBlank(message = "Author is required") String author ) {
-        var books =  bookService.getAllBooksByAuthor(author);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<byte[]> getAllBooksByAuthor(@RequestParam("author") @NotBlank(message = "Author is required") String author,
+                                                      WebRequest request) {
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        String query = "by-author|" + Book.normalizeAuthor(author);
+        return cachedQuery(query, request, () -> bookService.getAllBooksByAuthor(author));
+    }
+
+    /**
+     * Author typeahead: authors whose name starts with {@code prefix} (ignoring case), most books first.
+     */
+    @GetMapping("/authors")
+    public List<AuthorCount> completeAuthors(
+            @RequestParam("prefix") @NotBlank(message = "Prefix is required") String prefix,
+            @RequestParam(value = "limit", defaultValue = "10") @Min(1) @Max(100) int limit,
+            WebRequest request) {
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        return bookService.completeAuthors(prefix, limit);
+    }
+
+    /**
+     * Catalog totals and the {@code top} authors with the most books, from in-memory aggregates.
+     */
+    @GetMapping("/stats")
+    public CatalogStats getCatalogStats(@RequestParam(value = "top", defaultValue = "10") @Min(1) @Max(100) int top,
+                                        WebRequest request) {
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        return bookService.getCatalogStats(top);
     }
 
     @GetMapping("/search-title")
-    public List<Book>getAllBooksByKeywordInTitle(@RequestParam("keyword") String keyword ) {
-        return bookService.getAllBooksByKeywordInTitle(keyword);
+    public ResponseEntity<byte[]> getAllBooksByKeywordInTitle(
+            @RequestParam("keyword") @NotBlank(message = "Keyword is required") String keyword,
+            @RequestParam(value = "page", defaultValue = "0") @Min(0) int page,
+            @RequestParam(value = "size", defaultValue = "50") @Min(1) @Max(1000) int size,
+            WebRequest request) {
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        String query = "search-title|" + page + "|" + size + "|" + keyword.toLowerCase(Locale.ROOT);
+        return cachedQuery(query, request, () -> bookService.getAllBooksByKeywordInTitle(keyword, page, size));
+    }
+
+    /**
+     * Like {@code /search-title}, but matches titles whose words are a typo or two away from the keyword's.
+     */
+    @GetMapping("/search-title/fuzzy")
+    public ResponseEntity<byte[]> getAllBooksBySimilarTitle(
+            @RequestParam("keyword") @NotBlank(message = "Keyword is required") String keyword,
+            @RequestParam(value = "page", defaultValue = "0") @Min(0) int page,
+            @RequestParam(value = "size", defaultValue = "50") @Min(1) @Max(1000) int size,
+            WebRequest request) {
+        if (catalogNotModified(request)) {
+            return null;
+        }
+        String query = "search-title-fuzzy|" + page + "|" + size + "|" + keyword.toLowerCase(Locale.ROOT);
+        return cachedQuery(query, request, () -> bookService.getAllBooksBySimilarTitle(keyword, page, size));
+    }
+
+    @GetMapping("/search-title/stats")
+    public TitleIndexStats getTitleIndexStats() {
+        return bookService.getTitleIndexStats();
+    }
+
+    @GetMapping("/snapshot/stats")
+    public CatalogSnapshotStats getCatalogSnapshotStats() {
+        return bookService.getCatalogSnapshotStats();
     }
 
     @PostMapping
@@ -64,14 +232,170 @@ public class BookController {
         return ResponseEntity.created(location).body(createdBook);
     }
 
+    /**
+     * Creates all books of a JSON array in batched, chunked transactions.
+     * Answers 207 Multi-Status when some chunks failed; the body tells which.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkResult> createBooks(@RequestBody List<Book> books) {
+        return bulkResponse(bookService.createBooks(books.iterator()));
+    }
+
+    /**
+     * Same as {@link #createBooks(List)} for a newline-delimited JSON body, which is read as it arrives.
+     * A malformed line is answered with 400, naming the line; the lines before it have been processed.
+     */
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BulkResult> createBooksFromNdjson(InputStream body) throws IOException {
+        try (MappingIterator<Book> books = objectMapper.readerFor(Book.class).readValues(body)) {
+            return bulkResponse(bookService.createBooks(books));
+        } catch (BulkInputException ex) {
+            BulkResult processed = ex.getProcessed();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, String.format(Locale.ROOT,
+                    "Malformed book on line %d; the lines before it were processed: %d created, %d failed",
+                    lineOf(ex), processed.succeeded(), processed.failed()));
+        }
+    }
+
+    @DeleteMapping("/bulk")
+    public ResponseEntity<BulkResult> deleteBooks(@RequestBody List<Long> ids) {
+        return bulkResponse(bookService.deleteBooks(ids));
+    }
+
+    /**
+     * Deletes the book. With {@code If-Match: "<version>"} (or {@code "<version>-gzip"}) the delete only happens if the book
+     * is still at that version, otherwise 412 Precondition Failed is returned. If-Match uses the strong
+     * comparison, which a weak tag ({@code W/"<version>"}) never passes.
+     */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteBook(@PathVariable Long id) {
+    public ResponseEntity<Void> deleteBook(@PathVariable Long id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            bookService.deleteBook(id);
+            if (ifMatch == null || ifMatch.trim().equals("*")) {
+                bookService.deleteBook(id);
+            } else {
+                bookService.deleteBook(id, parseVersion(ifMatch));
+            }
             return ResponseEntity.noContent().build();
         } catch (BookNotFoundException ex) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, ex.getMessage());
+        } catch (BookVersionMismatchException ex) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, ex.getMessage());
+        }
+    }
+
+    private static List<Long> checkLookupIds(List<Long> ids) {
+        if (ids.size() > MAX_LOOKUP_IDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_LOOKUP_IDS + " ids per lookup");
+        }
+        if (ids.contains(null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ids must not be null");
+        }
+        return ids;
+    }
+
+    private EncodedBody encodeBook(Book book) {
+        String entityTag = book.getVersion() == null ? null : "\"" + book.getVersion() + "\"";
+        return new EncodedBody(encode(book), entityTag, book.getLastModified());
+    }
+
+    /**
+     * Serves the result of a query from the {@link ResponseBodyCache}, under the current catalog version,
+     * so a create or delete makes every cached result unreachable.
+     */
+    private ResponseEntity<byte[]> cachedQuery(String query, WebRequest request, Supplier<?> result) {
+        String key = bookService.getCatalogVersion().entityTag() + "|" + query;
+        EncodedBody body = responseBodyCache.getQuery(key, () -> new EncodedBody(encode(result.get())));
+        return jsonBody(ResponseEntity.ok(), body, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    private ResponseEntity<byte[]> jsonBody(ResponseEntity.BodyBuilder response, EncodedBody body, String acceptEncoding) {
+        response.contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = responseBodyCache.worthCompressing(body) && acceptsGzip(acceptEncoding);
+        if (body.entityTag() != null) {
+            response.eTag(gzip ? gzipEntityTag(body.entityTag()) : body.entityTag());
+        }
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.body(body.json());
+    }
+
+    private static String gzipEntityTag(String entityTag) {
+        return entityTag.substring(0, entityTag.length() - 1) + GZIP_TAG_SUFFIX + "\"";
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private byte[] encode(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Checks {@code If-None-Match}/{@code If-Modified-Since} against the catalog version and sets the
+     * {@code ETag} and {@code Last-Modified} headers; {@code true} means the 304 is already prepared.
+     * The validator is per URL, so the same catalog tag serves every query.
+     */
+    private boolean catalogNotModified(WebRequest request) {
+        CatalogVersion version = bookService.getCatalogVersion();
+        return request.checkNotModified(version.entityTag(), version.lastModified().toEpochMilli());
+    }
+
+    private static long parseVersion(String entityTag) {
+        String version = entityTag.trim();
+        if (version.startsWith("W/")) {
+            throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "If-Match needs a strong entity tag");
+        }
+        version = version.replace("\"", "");
+        // the tag of the gzipped representation names the same version
+        if (version.endsWith(GZIP_TAG_SUFFIX)) {
+            version = version.substring(0, version.length() - GZIP_TAG_SUFFIX.length());
+        }
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "If-Match must hold a book version");
         }
     }
-}
 
+    /**
+     * The line the parser stopped at, or the position of the unreadable item when the parser did not say.
+     */
+    private static long lineOf(BulkInputException ex) {
+        for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof JsonProcessingException parseError && parseError.getLocation() != null) {
+                return parseError.getLocation().getLineNr();
+            }
+        }
+        return ex.getPosition() + 1;
+    }
+
+    private static ResponseEntity<BulkResult> bulkResponse(BulkResult result) {
+        return ResponseEntity.status(result.failed() == 0 ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(result);
+    }
+
+    private void writeNdjsonLine(OutputStream out, Book book) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(book));
+            out.write('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
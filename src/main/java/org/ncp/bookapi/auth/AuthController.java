@@ -1,37 +1,130 @@
 package org.ncp.bookapi.auth;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.security.core.AuthenticationException;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 @RestController
 @RequestMapping("/api/auth")
 public class AuthController {
 
     @Autowired
-    private AuthenticationManager authenticationManager;
+    private LoginAuthenticator loginAuthenticator;
 
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    /**
+     * The password check runs on the {@link LoginAuthenticator} pool; the request thread is released meanwhile.
+     */
     @PostMapping("/login")
-    public String login(@RequestBody AuthRequest request) {
+    public CompletableFuture<ResponseEntity<String>> login(@RequestBody AuthRequest request) {
+        // Attempt to authenticate with provided credentials
+        var authToken = new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword());
+        return loginAuthenticator.authenticate(authToken)
+                // If successful, generate JWT token carrying the user's authorities
+                .thenApply(authentication -> ResponseEntity.ok(
+                        jwtUtil.generateToken(authentication.getName(), authentication.getAuthorities())))
+                .exceptionally(AuthController::loginFailed);
+    }
+
+    /**
+     * Like {@link #login}, but answers a short-lived access token and a refresh token as JSON.
+     */
+    @PostMapping("/token")
+    public CompletableFuture<ResponseEntity<?>> token(@RequestBody AuthRequest request) {
+        var authToken = new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword());
+        return loginAuthenticator.authenticate(authToken)
+                .<ResponseEntity<?>>thenApply(authentication -> ResponseEntity.ok(
+                        jwtUtil.generateTokenPair(authentication.getName(), authentication.getAuthorities())))
+                .exceptionally(failure -> {
+                    ResponseEntity<String> failed = loginFailed(failure);
+                    // a wrong password is a 401 here, there is no token to return in its place
+                    return failed.getStatusCode() == HttpStatus.OK
+                            ? ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(failed.getBody())
+                            : failed;
+                });
+    }
+
+    /**
+     * Trades a refresh token for a new pair, without a password check. The refresh token is single use:
+     * revoking it is what spends it, so of two concurrent refreshes with the same token only one succeeds.
+     * The user's current authorities are read from the user store; a user deleted since is a 401.
+     */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody RefreshRequest request) {
+        Claims claims;
+        try {
+            claims = jwtUtil.verifyRefreshToken(request.getRefreshToken());
+        } catch (JwtException | IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ex.getMessage());
+        }
+        if (!jwtUtil.revoke(claims)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Refresh token revoked");
+        }
+        UserDetails user;
         try {
-            // Attempt to authenticate with provided credentials
-            var authToken = new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword());
-            authenticationManager.authenticate(authToken);
+            user = userDetailsService.loadUserByUsername(claims.getSubject());
+        } catch (UsernameNotFoundException ex) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Unknown user");
+        }
+        if (!user.isEnabled() || !user.isAccountNonLocked()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Account disabled");
+        }
+        return ResponseEntity.ok(jwtUtil.generateTokenPair(user.getUsername(), user.getAuthorities()));
+    }
 
-            // If successful, generate JWT token
-            return jwtUtil.generateToken(request.getUsername());
-        } catch (AuthenticationException ex) {
+    /**
+     * Revokes the bearer access token and, when sent, the refresh token.
+     */
+    @PostMapping("/logout")
+    public ResponseEntity<Void> logout(@RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authHeader,
+                                       @RequestBody(required = false) RefreshRequest request) {
+        try {
+            if (authHeader != null && authHeader.startsWith("Bearer ")) {
+                jwtUtil.revoke(jwtUtil.getVerifiedClaims(authHeader.substring(7)));
+            }
+            if (request != null && request.getRefreshToken() != null) {
+                jwtUtil.revoke(jwtUtil.verifyRefreshToken(request.getRefreshToken()));
+            }
+        } catch (JwtException | IllegalArgumentException ex) {
+            // nothing to revoke: an invalid token cannot be used anyway
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    private static ResponseEntity<String> loginFailed(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                ? failure.getCause() : failure;
+        if (cause instanceof AuthenticationException ex) {
             // If authentication fails, return an error or throw exception
             //throw new RuntimeException("Invalid username or password");
-            return ex.getMessage();
+            return ResponseEntity.ok(ex.getMessage());
+        }
+        if (cause instanceof LoginRejectedException ex) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(ex.getMessage());
         }
+        throw failure instanceof CompletionException completion ? completion : new CompletionException(cause);
     }
-}
\ No newline at end of file
+}
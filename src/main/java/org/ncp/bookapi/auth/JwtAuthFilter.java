@@ -1,28 +1,36 @@
 package org.ncp.bookapi.auth;
 
-
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
+    static final String VERIFICATION_TIMER = "bookapi.jwt.verification";
+
     private final JwtUtil jwtUtil;
-    private final UserDetailsService userDetailsService;
+    // registered once, so timing a request does not look up or allocate meters
+    private final Timer verifiedTimer;
+    private final Timer rejectedTimer;
 
-    public JwtAuthFilter(JwtUtil jwtUtil, UserDetailsService userDetailsService) {
+    public JwtAuthFilter(JwtUtil jwtUtil, MeterRegistry meterRegistry) {
         this.jwtUtil = jwtUtil;
-        this.userDetailsService = userDetailsService;
+        this.verifiedTimer = verificationTimer(meterRegistry, "verified");
+        this.rejectedTimer = verificationTimer(meterRegistry, "rejected");
     }
 
     @Override
@@ -35,23 +43,47 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
-            String username = jwtUtil.extractUsername(token);
-
-            if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                var userDetails = userDetailsService.loadUserByUsername(username);
-
-                if (jwtUtil.validateToken(token, userDetails)) {
-                    var authToken = new UsernamePasswordAuthenticationToken(
-                            userDetails,
-                            null,
-                            userDetails.getAuthorities()
-                    );
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-                }
+            // parsed and verified once per request, and only once per token thanks to the claims cache
+            Claims claims = verifyTimed(token);
+
+            if (claims == null) {
+                // expired or tampered: carry on unauthenticated, so that protected routes answer 401
+                // (and the client refreshes its token) while open ones are still served
+                SecurityContextHolder.clearContext();
+            } else if (jwtUtil.validateToken(claims) && SecurityContextHolder.getContext().getAuthentication() == null) {
+                // the token is the source of truth: no user store lookup on the request path
+                var authToken = new UsernamePasswordAuthenticationToken(
+                        claims.getSubject(),
+                        null,
+                        jwtUtil.extractAuthorities(claims)
+                );
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         }
 
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * The verified claims of the token, or {@code null} when it is expired, tampered with or malformed.
+     */
+    private Claims verifyTimed(String token) {
+        long start = System.nanoTime();
+        try {
+            Claims claims = jwtUtil.getVerifiedClaims(token);
+            verifiedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return claims;
+        } catch (JwtException | IllegalArgumentException ex) {
+            rejectedTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return null;
+        }
+    }
+
+    private static Timer verificationTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder(VERIFICATION_TIMER)
+                .description("Bearer token signature verification and claims parsing, cache hits included")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,72 @@
+package org.ncp.bookapi.auth;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SigningKeyResolverAdapter;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+
+import javax.crypto.SecretKey;
+import java.security.Key;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * HMAC keys by id. Tokens name their key in the {@code kid} header, so verifying picks the key
+ * with one map lookup, whichever key of the ring signed the token.
+ */
+public final class JwtKeyRing extends SigningKeyResolverAdapter {
+
+    private final Map<String, SecretKey> keys;
+    private final String activeKeyId;
+
+    public JwtKeyRing(Map<String, SecretKey> keys, String activeKeyId) {
+        if (!keys.containsKey(activeKeyId)) {
+            throw new IllegalArgumentException("The active key " + activeKeyId + " is not in the key ring");
+        }
+        this.keys = Map.copyOf(keys);
+        this.activeKeyId = activeKeyId;
+    }
+
+    /**
+     * Keys from the configuration, the last one active unless {@code active-key} says otherwise;
+     * a single generated key when none is configured.
+     */
+    public static JwtKeyRing from(JwtProperties properties) {
+        if (properties.keys().isEmpty()) {
+            return generated();
+        }
+        Map<String, SecretKey> keys = new LinkedHashMap<>();
+        String lastId = null;
+        for (JwtProperties.Key key : properties.keys()) {
+            keys.put(key.id(), Keys.hmacShaKeyFor(Base64.getDecoder().decode(key.secret())));
+            lastId = key.id();
+        }
+        return new JwtKeyRing(keys, properties.activeKey() != null ? properties.activeKey() : lastId);
+    }
+
+    public static JwtKeyRing generated() {
+        String id = UUID.randomUUID().toString();
+        return new JwtKeyRing(Map.of(id, Keys.secretKeyFor(SignatureAlgorithm.HS256)), id);
+    }
+
+    public String activeKeyId() {
+        return activeKeyId;
+    }
+
+    public SecretKey activeKey() {
+        return keys.get(activeKeyId);
+    }
+
+    @Override
+    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+        SecretKey key = header.getKeyId() == null ? null : keys.get(header.getKeyId());
+        if (key == null) {
+            throw new SignatureException("Token signed with an unknown key: " + header.getKeyId());
+        }
+        return key;
+    }
+}
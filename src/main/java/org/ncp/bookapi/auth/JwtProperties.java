@@ -0,0 +1,33 @@
+package org.ncp.bookapi.auth;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Signing keys and token lifetimes:
+ * <pre>
+ * bookapi.jwt.keys[0].id=2026-10
+ * bookapi.jwt.keys[0].secret=${JWT_KEY_2026_10}   # base64, at least 32 bytes
+ * bookapi.jwt.active-key=2026-10
+ * </pre>
+ * The active key signs new tokens; every listed key verifies them. To rotate, add a key and make it active,
+ * then drop the old one once the refresh tokens it signed have expired.
+ * Without keys, one is generated at startup and every restart logs everybody out.
+ */
+@ConfigurationProperties("bookapi.jwt")
+public record JwtProperties(@DefaultValue List<Key> keys,
+                            String activeKey,
+                            @DefaultValue("PT15M") Duration accessTokenTtl,
+                            @DefaultValue("P14D") Duration refreshTokenTtl,
+                            @DefaultValue("100000") int expectedRevocations) {
+
+    public static JwtProperties defaults() {
+        return new JwtProperties(List.of(), null, Duration.ofMinutes(15), Duration.ofDays(14), 100_000);
+    }
+
+    public record Key(String id, String secret) {
+    }
+}
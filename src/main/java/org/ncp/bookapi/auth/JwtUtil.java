@@ -1,71 +1,231 @@
 package org.ncp.bookapi.auth;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.JwtException;
 import io.jsonwebtoken.Jwts;
-import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
 
-import java.security.Key;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Component;
 
 @Component
 public class JwtUtil {
 
-    // Secret key for signing JWT (secure and private in production)
-    private final Key key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    // Claim carrying the granted authorities, so requests can be authorized without a user store lookup
+    static final String AUTHORITIES_CLAIM = "roles";
 
-    // Token validity (e.g., 1 hour)
-    private final long validityInMs = 3600000;
+    // Claim telling access tokens from refresh tokens, so a refresh token can never authorize a request
+    static final String TOKEN_TYPE_CLAIM = "typ";
+    static final String ACCESS_TOKEN = "access";
+    static final String REFRESH_TOKEN = "refresh";
+
+    // Signing keys by id (secure and private in production)
+    private final JwtKeyRing keyRing;
+
+    // Token validity: access tokens are short-lived, refresh tokens get new ones without a password check
+    private final long accessValidityInMs;
+    private final long refreshValidityInMs;
+
+    // Upper bound on the number of distinct tokens whose verified claims are kept
+    private final long maxCachedTokens = 10000;
+
+    // Ids of tokens revoked by a logout or a refresh
+    private final TokenDenyList denyList;
+
+    // Parsers are immutable and thread-safe, so a single one serves every request
+    private final JwtParser parser;
+
+    // Verified claims keyed by the token's SHA-256 digest; an entry lives exactly as long as its token
+    private final Cache<String, Claims> verifiedClaims = Caffeine.newBuilder()
+            .maximumSize(maxCachedTokens)
+            .expireAfter(new Expiry<String, Claims>() {
+                @Override
+                public long expireAfterCreate(String digest, Claims claims, long currentTime) {
+                    return nanosUntilExpiry(claims);
+                }
+
+                @Override
+                public long expireAfterUpdate(String digest, Claims claims, long currentTime, long currentDuration) {
+                    return nanosUntilExpiry(claims);
+                }
+
+                @Override
+                public long expireAfterRead(String digest, Claims claims, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    /**
+     * A generated key and the default lifetimes, for tests and benchmarks
+     */
+    public JwtUtil() {
+        this(JwtProperties.defaults());
+    }
+
+    @Autowired
+    public JwtUtil(JwtProperties properties) {
+        this(JwtKeyRing.from(properties), properties.accessTokenTtl(), properties.refreshTokenTtl(),
+                new TokenDenyList(properties.expectedRevocations()));
+    }
+
+    public JwtUtil(JwtKeyRing keyRing, Duration accessTokenTtl, Duration refreshTokenTtl, TokenDenyList denyList) {
+        this.keyRing = keyRing;
+        this.accessValidityInMs = accessTokenTtl.toMillis();
+        this.refreshValidityInMs = refreshTokenTtl.toMillis();
+        this.denyList = denyList;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(keyRing)
+                .build();
+    }
 
     /**
-     * Generate a JWT token for the specified username
+     * Generate a JWT token for the specified username, without any authorities
      */
     public String generateToken(String username) {
-        Date now = new Date();
-        Date expiry = new Date(now.getTime() + validityInMs);
+        return generateToken(username, List.of());
+    }
 
-        return Jwts.builder()
-                .setSubject(username)
-                .setIssuedAt(now)
-                .setExpiration(expiry)
-                .signWith(key)
-                .compact();
+    /**
+     * Generate an access token for the specified username embedding its granted authorities
+     */
+    public String generateToken(String username, Collection<? extends GrantedAuthority> authorities) {
+        return buildToken(username, authorities, ACCESS_TOKEN, accessValidityInMs);
+    }
+
+    /**
+     * Generate an access token and a refresh token for the specified username
+     */
+    public TokenPair generateTokenPair(String username, Collection<? extends GrantedAuthority> authorities) {
+        return new TokenPair(
+                generateToken(username, authorities),
+                buildToken(username, authorities, REFRESH_TOKEN, refreshValidityInMs),
+                TimeUnit.MILLISECONDS.toSeconds(accessValidityInMs));
+    }
+
+    /**
+     * Verify a refresh token, always against the signature and the deny list (refresh tokens are not cached).
+     * Throws a {@link JwtException} when the token is invalid, expired, revoked or not a refresh token.
+     */
+    public Claims verifyRefreshToken(String token) {
+        Claims claims = parseClaims(token);
+        if (!REFRESH_TOKEN.equals(claims.get(TOKEN_TYPE_CLAIM, String.class))) {
+            throw new JwtException("Not a refresh token");
+        }
+        if (denyList.isRevoked(claims.getId())) {
+            throw new JwtException("Refresh token revoked");
+        }
+        return claims;
+    }
+
+    /**
+     * Deny the token until it expires. Returns whether this call revoked it, {@code false} when it already was.
+     */
+    public boolean revoke(Claims claims) {
+        return denyList.revoke(claims.getId(), claims.getExpiration().getTime());
+    }
+
+    /**
+     * Return the verified claims of the token.
+     * The signature is checked and the JSON parsed only the first time a token is seen;
+     * later calls with the same token are answered from the cache until the token expires.
+     * Invalid or expired tokens throw a {@link io.jsonwebtoken.JwtException} and are never cached.
+     */
+    public Claims getVerifiedClaims(String token) {
+        return verifiedClaims.get(digest(token), d -> parseClaims(token));
     }
 
     /**
      * Extract the username (subject) from the JWT token
      */
     public String extractUsername(String token) {
-        return getClaims(token).getSubject();
+        return getVerifiedClaims(token).getSubject();
     }
 
     /**
-     * Validate the token (check username matches and token is not expired)
+     * Validate already verified claims (check there is a username, it is an access token,
+     * and it is neither expired nor revoked)
      */
-    public boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+    public boolean validateToken(Claims claims) {
+        return claims.getSubject() != null
+                && ACCESS_TOKEN.equals(claims.get(TOKEN_TYPE_CLAIM, String.class))
+                && !isTokenExpired(claims)
+                && !denyList.isRevoked(claims.getId());
     }
 
     /**
-     * Check if the token has expired
+     * Extract the authorities embedded by {@link #generateToken(String, Collection)}
      */
-    private boolean isTokenExpired(String token) {
-        final Date expiration = getClaims(token).getExpiration();
-        return expiration.before(new Date());
+    public List<GrantedAuthority> extractAuthorities(Claims claims) {
+        List<?> authorities = claims.get(AUTHORITIES_CLAIM, List.class);
+        if (authorities == null) {
+            return List.of();
+        }
+        return authorities.stream()
+                .<GrantedAuthority>map(authority -> new SimpleGrantedAuthority(authority.toString()))
+                .toList();
     }
 
     /**
-     * Parse the token and extract claims
+     * Verify the signature and parse the claims, bypassing the cache
      */
-    private Claims getClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    public Claims parseClaims(String token) {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * Check if the token has expired
+     */
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
+    }
+
+    private String buildToken(String username, Collection<? extends GrantedAuthority> authorities,
+                              String type, long validityInMs) {
+        Date now = new Date();
+        Date expiry = new Date(now.getTime() + validityInMs);
+
+        return Jwts.builder()
+                .setHeaderParam("kid", keyRing.activeKeyId())
+                .setId(UUID.randomUUID().toString())
+                .setSubject(username)
+                .claim(TOKEN_TYPE_CLAIM, type)
+                .claim(AUTHORITIES_CLAIM, authorities.stream().map(GrantedAuthority::getAuthority).toList())
+                .setIssuedAt(now)
+                .setExpiration(expiry)
+                .signWith(keyRing.activeKey())
+                .compact();
+    }
+
+    private long nanosUntilExpiry(Claims claims) {
+        Date expiration = claims.getExpiration();
+        long remainingMs = expiration == null ? accessValidityInMs : expiration.getTime() - System.currentTimeMillis();
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+    }
+
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException ex) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
     }
 }
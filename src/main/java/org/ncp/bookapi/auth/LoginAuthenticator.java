@@ -0,0 +1,112 @@
+package org.ncp.bookapi.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs password checks (user lookup + BCrypt verify) on a small pool of their own.
+ *
+ * BCrypt is deliberately slow, so a burst of logins on the request threads would leave none for book reads.
+ * The pool has one thread per core and a bounded queue: when the queue is full, or a login waited in it
+ * longer than {@code max-queue-wait} (its client has probably given up), the login fails fast with
+ * {@link LoginRejectedException} instead of piling up.
+ *
+ * Not an {@code Executor} bean on purpose: one would replace Boot's {@code applicationTaskExecutor}.
+ */
+@Component
+public class LoginAuthenticator implements DisposableBean {
+
+    private final AuthenticationManager authenticationManager;
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueWaitNanos;
+    private final MeterRegistry meterRegistry;
+    private final Timer queueTimer;
+    private final Counter rejected;
+
+    @Autowired
+    public LoginAuthenticator(AuthenticationManager authenticationManager, MeterRegistry meterRegistry,
+                              @Value("${bookapi.login.threads:0}") int threads,
+                              @Value("${bookapi.login.queue-capacity:64}") int queueCapacity,
+                              @Value("${bookapi.login.max-queue-wait:2s}") Duration maxQueueWait) {
+        this.authenticationManager = authenticationManager;
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "login-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxQueueWaitNanos = maxQueueWait.toNanos();
+        this.meterRegistry = meterRegistry;
+        this.queueTimer = Timer.builder("bookapi.login.queue")
+                .description("Time a login waited for a password check thread")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bookapi.login.rejected")
+                .description("Logins refused because the password check pool was saturated")
+                .register(meterRegistry);
+        Gauge.builder("bookapi.login.queued", executor, e -> e.getQueue().size())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Completes with the authentication, or exceptionally with the {@code AuthenticationException}
+     * or a {@link LoginRejectedException}.
+     */
+    public CompletableFuture<Authentication> authenticate(UsernamePasswordAuthenticationToken authToken) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long waited = System.nanoTime() - queuedAt;
+                queueTimer.record(waited, TimeUnit.NANOSECONDS);
+                if (waited > maxQueueWaitNanos) {
+                    rejected.increment();
+                    throw new LoginRejectedException();
+                }
+                return authenticateTimed(authToken);
+            }, executor);
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new LoginRejectedException());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Times the password check (user lookup + BCrypt verify), which dominates the cost of a login
+     */
+    private Authentication authenticateTimed(UsernamePasswordAuthenticationToken authToken) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            Authentication authentication = authenticationManager.authenticate(authToken);
+            outcome = "success";
+            return authentication;
+        } finally {
+            sample.stop(meterRegistry.timer("bookapi.login.authentication", "outcome", outcome));
+        }
+    }
+}
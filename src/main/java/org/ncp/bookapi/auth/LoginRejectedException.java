@@ -0,0 +1,11 @@
+package org.ncp.bookapi.auth;
+
+/**
+ * The password check pool is saturated; the client should retry later.
+ */
+public class LoginRejectedException extends RuntimeException {
+
+    public LoginRejectedException() {
+        super("Too many concurrent logins, retry later");
+    }
+}
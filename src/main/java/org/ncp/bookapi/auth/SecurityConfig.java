@@ -1,22 +1,31 @@
 package org.ncp.bookapi.auth;
 
+import org.ncp.bookapi.ratelimit.LoadSheddingFilter;
+import org.ncp.bookapi.ratelimit.RateLimitFilter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
 @Configuration  // Marks this class as a source of bean definitions, like Startup.cs ConfigureServices
 @EnableMethodSecurity  // Enables method-level security annotations (like [Authorize] on methods/controllers)
+@EnableConfigurationProperties(JwtProperties.class)
 public class SecurityConfig {
 
     /**
@@ -24,7 +33,9 @@ public class SecurityConfig {
      * Similar to configuring the middleware pipeline in .NET Core's Configure method.
      */
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtAuthFilter jwtAuthFilter) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, JwtAuthFilter jwtAuthFilter,
+                                                   RateLimitFilter rateLimitFilter,
+                                                   LoadSheddingFilter loadSheddingFilter) throws Exception {
         http
                 // Disable CSRF protection since this is a stateless REST API (no cookie-based sessions)
                 .csrf(csrf -> csrf.disable())
@@ -37,15 +48,26 @@ public class SecurityConfig {
                         // Allow unauthenticated access to these API paths (like [AllowAnonymous])
                         .requestMatchers("/api/auth/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/books", "/api/books/**").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/async/books", "/api/async/books/**").permitAll()
+                        // A read, posted only because the id list can be too long for a URL
+                        .requestMatchers(HttpMethod.POST, "/api/books/lookup").permitAll()
+                        // Liveness checks and the Prometheus scraper do not carry tokens
+                        .requestMatchers(HttpMethod.GET, "/actuator/health", "/actuator/health/**", "/actuator/prometheus").permitAll()
 
                         // All other requests require authentication
                         .anyRequest().authenticated()
                 )
 
                 // Set session management to stateless, like using JWT tokens without server session state
-                .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS));
+                .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+
+                // No token, or an expired or invalid one, on a protected route: 401, so clients know to refresh
+                .exceptionHandling(ex -> ex.authenticationEntryPoint(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED)));
 
         http.addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class);
+        // Budgets are per user once the token is verified; shedding only counts requests that were not rate limited
+        http.addFilterAfter(rateLimitFilter, JwtAuthFilter.class);
+        http.addFilterAfter(loadSheddingFilter, RateLimitFilter.class);
 
         // Build and return the configured filter chain (middleware pipeline)
         return http.build();
@@ -54,10 +76,26 @@ public class SecurityConfig {
     /**
      * Defines the password encoder bean.
      * Uses BCrypt hashing algorithm, similar to ASP.NET Core's PasswordHasher<TUser>.
+     * Each step of strength doubles the cost of a hash; hashes stored with a lower strength are upgraded
+     * on the user's next successful login (see {@link #authenticationProvider}).
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder(@Value("${bookapi.security.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
+    }
+
+    /**
+     * Verifies passwords against the user store, and rehashes them through the {@link UserDetailsPasswordService}
+     * when {@link PasswordEncoder#upgradeEncoding} says the stored hash is weaker than the configured strength.
      */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public DaoAuthenticationProvider authenticationProvider(UserDetailsService userDetailsService,
+                                                            UserDetailsPasswordService passwordService,
+                                                            PasswordEncoder passwordEncoder) {
+        var provider = new DaoAuthenticationProvider(passwordEncoder);
+        provider.setUserDetailsService(userDetailsService);
+        provider.setUserDetailsPasswordService(passwordService);
+        return provider;
     }
 
     /**
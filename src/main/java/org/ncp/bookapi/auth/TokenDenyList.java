@@ -0,0 +1,131 @@
+package org.ncp.bookapi.auth;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Ids ({@code jti}) of revoked tokens that have not expired yet.
+ *
+ * A Bloom filter sits in front of the exact map: for the vast majority of tokens, which were never revoked,
+ * the check is a handful of bit reads, with no hashing of map keys and no shared writes. Only a filter hit
+ * (a revoked token, or a 1% false positive) consults the map. Bits cannot be cleared, so once a minute,
+ * on the next revocation, expired ids are dropped and the filter is rebuilt from the map.
+ *
+ * In memory only: revocations do not survive a restart or reach other instances. Access tokens are short-lived,
+ * which bounds the exposure.
+ */
+public class TokenDenyList {
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long PURGE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private final int expectedEntries;
+    private final LongSupplier clock;
+    private final Map<String, Long> expiryById = new ConcurrentHashMap<>();
+    private final AtomicLong lastPurge;
+    private final AtomicBoolean purging = new AtomicBoolean();
+    private volatile BloomFilter filter;
+
+    public TokenDenyList(int expectedEntries) {
+        this(expectedEntries, System::currentTimeMillis);
+    }
+
+    public TokenDenyList(int expectedEntries, LongSupplier clock) {
+        this.expectedEntries = expectedEntries;
+        this.clock = clock;
+        this.lastPurge = new AtomicLong(clock.getAsLong());
+        this.filter = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Denies the id until {@code expiresAtMillis}, when the token would be rejected as expired anyway.
+     * Returns {@code true} only for the call that denied it: a single-use token is spent by whoever gets {@code true}.
+     */
+    public boolean revoke(String id, long expiresAtMillis) {
+        long now = clock.getAsLong();
+        if (id == null || expiresAtMillis <= now) {
+            return false;
+        }
+        boolean revoked = expiryById.putIfAbsent(id, expiresAtMillis) == null;
+        // read after the put: a concurrent rebuild either sees the id in the map or is already visible here
+        filter.add(id);
+        if (now - lastPurge.get() >= PURGE_INTERVAL_MS) {
+            purgeExpired(now);
+        }
+        return revoked;
+    }
+
+    public boolean isRevoked(String id) {
+        return id != null && filter.mightContain(id) && expiryById.containsKey(id);
+    }
+
+    public int size() {
+        return expiryById.size();
+    }
+
+    void purgeExpired(long now) {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            lastPurge.set(now);
+            expiryById.values().removeIf(expiry -> expiry <= now);
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, expiryById.size() * 2), FALSE_POSITIVE_RATE);
+            expiryById.keySet().forEach(rebuilt::add);
+            filter = rebuilt;
+            // ids revoked while the first pass ran may have gone to the old filter only
+            expiryById.keySet().forEach(rebuilt::add);
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    static final class BloomFilter {
+
+        private final AtomicLongArray words;
+        private final long bits;
+        private final int hashes;
+
+        BloomFilter(int expectedEntries, double falsePositiveRate) {
+            long optimalBits = (long) Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) Math.max(1, (optimalBits + 63) / 64));
+            this.bits = words.length() * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) bits / expectedEntries * Math.log(2)));
+        }
+
+        void add(String id) {
+            long hash1 = mix(id.hashCode());
+            long hash2 = mix(hash1);
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bits);
+                long mask = 1L << bit;
+                int word = (int) (bit >>> 6);
+                words.getAndUpdate(word, current -> current | mask);
+            }
+        }
+
+        boolean mightContain(String id) {
+            long hash1 = mix(id.hashCode());
+            long hash2 = mix(hash1);
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // SplitMix64 finalizer, spreads String.hashCode over 64 bits
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
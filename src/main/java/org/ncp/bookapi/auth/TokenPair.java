@@ -0,0 +1,11 @@
+package org.ncp.bookapi.auth;
+
+/**
+ * Answer of the token and refresh endpoints; {@code expiresIn} is the access token lifetime in seconds.
+ */
+public record TokenPair(String accessToken, String refreshToken, String tokenType, long expiresIn) {
+
+    public TokenPair(String accessToken, String refreshToken, long expiresIn) {
+        this(accessToken, refreshToken, "Bearer", expiresIn);
+    }
+}
@@ -2,7 +2,6 @@ package org.ncp.bookapi.auth;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 
@@ -14,9 +13,10 @@ public class UserDetailsServiceConfig {
      * Defines an in-memory user store with a single test user.
      * Equivalent to adding a test user in-memory in ASP.NET Core Identity for development/testing.
      * Password is hashed using the PasswordEncoder defined above.
+     * Declared as the manager so it is also the {@code UserDetailsPasswordService} that stores upgraded hashes.
      */
     @Bean
-    public UserDetailsService userDetailsService(PasswordEncoder encoder) {
+    public InMemoryUserDetailsManager userDetailsService(PasswordEncoder encoder) {
         var user = org.springframework.security.core.userdetails.User.builder()
                 .username("testuser")
                 .password(encoder.encode("testpass"))
@@ -0,0 +1,140 @@
+package org.ncp.bookapi.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.ncp.bookapi.datasource.ReadRouting;
+import org.ncp.bookapi.entities.Book;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache of book snapshots keyed by id.
+ *
+ * Entries are evicted by size and by age. Misses are cached too, with a shorter lifetime,
+ * so repeated lookups of unknown ids do not reach the database. Concurrent lookups of the
+ * same cold id wait for a single load instead of each querying the database.
+ *
+ * A load runs on the thread that missed, after its pending entry is in the cache, not inside a cache
+ * computation: a slow or batched load holds no lock that lookups of other ids could queue behind.
+ * An id invalidated while it loads is not cached with what the load read.
+ */
+@Component
+public class BookCache {
+
+    private final AsyncCache<Long, Optional<BookSnapshot>> cache;
+
+    @Autowired
+    public BookCache(@Value("${bookapi.cache.books.maximum-size:10000}") long maximumSize,
+                     @Value("${bookapi.cache.books.ttl:PT10M}") Duration ttl,
+                     @Value("${bookapi.cache.books.negative-ttl:PT30S}") Duration negativeTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Long, Optional<BookSnapshot>>() {
+                    @Override
+                    public long expireAfterCreate(Long id, Optional<BookSnapshot> book, long currentTime) {
+                        return book.isPresent() ? ttl.toNanos() : negativeTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long id, Optional<BookSnapshot> book, long currentTime, long currentDuration) {
+                        return expireAfterCreate(id, book, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long id, Optional<BookSnapshot> book, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * Returns the cached book, or loads it with {@code loader} on a miss, from the primary database.
+     */
+    public Optional<Book> get(Long id, Function<Long, Optional<Book>> loader) {
+        CompletableFuture<Optional<BookSnapshot>> loading = new CompletableFuture<>();
+        CompletableFuture<Optional<BookSnapshot>> cached = cache.get(id, (key, executor) -> loading);
+        if (cached == loading) {
+            try {
+                loading.complete(ReadRouting.onPrimary(() -> loader.apply(id)).map(BookSnapshot::from));
+            } catch (RuntimeException | Error ex) {
+                // a failed future leaves the cache on its own, so the next lookup loads again
+                loading.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        try {
+            return cached.join().map(BookSnapshot::toBook);
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    /**
+     * Returns the books found for the ids, in the order of the ids, loading every missing id with a single
+     * call to {@code loader} (from the primary database). Ids the loader does not return are cached as misses.
+     */
+    public Map<Long, Book> getAll(Collection<Long> ids, Function<Set<Long>, ? extends Iterable<Book>> loader) {
+        Map<Long, Optional<BookSnapshot>> cached = cache.synchronous().getAll(ids, missing -> load(missing, loader));
+        Map<Long, Book> books = new LinkedHashMap<>();
+        for (Long id : ids) {
+            Optional<BookSnapshot> book = cached.get(id);
+            if (book != null && book.isPresent()) {
+                books.put(id, book.get().toBook());
+            }
+        }
+        return books;
+    }
+
+    /**
+     * Caches a book that was just read, such as during warm-up, without going through a loader.
+     */
+    public void put(Book book) {
+        cache.synchronous().put(book.getId(), Optional.of(BookSnapshot.from(book)));
+    }
+
+    public void invalidate(Long id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    private static Map<Long, Optional<BookSnapshot>> load(Set<? extends Long> ids,
+                                                          Function<Set<Long>, ? extends Iterable<Book>> loader) {
+        Map<Long, Optional<BookSnapshot>> loaded = new HashMap<>();
+        for (Long id : ids) {
+            loaded.put(id, Optional.empty());
+        }
+        ReadRouting.onPrimary(() -> loader.apply(Set.copyOf(ids)))
+                .forEach(book -> loaded.put(book.getId(), Optional.of(BookSnapshot.from(book))));
+        return loaded;
+    }
+
+    public BookCacheStats stats() {
+        CacheStats stats = cache.synchronous().stats();
+        return new BookCacheStats(
+                cache.synchronous().estimatedSize(),
+                stats.hitCount(),
+                stats.missCount(),
+                stats.loadCount(),
+                stats.evictionCount(),
+                stats.hitRate());
+    }
+}
@@ -0,0 +1,13 @@
+package org.ncp.bookapi.cache;
+
+/**
+ * Counters of the {@link BookCache}, for sizing it.
+ */
+public record BookCacheStats(
+        long size,
+        long hits,
+        long misses,
+        long loads,
+        long evictions,
+        double hitRate) {
+}
@@ -0,0 +1,26 @@
+package org.ncp.bookapi.cache;
+
+import org.ncp.bookapi.entities.Book;
+
+import java.time.Instant;
+
+/**
+ * Immutable copy of a {@link Book}, safe to share between requests.
+ */
+public record BookSnapshot(Long id, String title, String author, Long version, Instant lastModified) {
+
+    public static BookSnapshot from(Book book) {
+        return new BookSnapshot(book.getId(), book.getTitle(), book.getAuthor(), book.getVersion(), book.getLastModified());
+    }
+
+    /**
+     * Returns a fresh, detached {@link Book} so callers can never modify the cached state.
+     */
+    public Book toBook() {
+        Book book = new Book(title, author);
+        book.setId(id);
+        book.setVersion(version);
+        book.setLastModified(lastModified);
+        return book;
+    }
+}
@@ -0,0 +1,63 @@
+package org.ncp.bookapi.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A response body already serialized to UTF-8 JSON, plus its gzip encoding, computed on first use,
+ * and the validators of a single resource when there are any.
+ * Instances are shared between requests; the arrays must not be modified.
+ */
+public final class EncodedBody {
+
+    private final byte[] json;
+    private final String entityTag;
+    private final Instant lastModified;
+    // benign race: two threads may both compress, either result is correct
+    private volatile byte[] gzip;
+
+    public EncodedBody(byte[] json) {
+        this(json, null, null);
+    }
+
+    public EncodedBody(byte[] json, String entityTag, Instant lastModified) {
+        this.json = json;
+        this.entityTag = entityTag;
+        this.lastModified = lastModified;
+    }
+
+    public byte[] json() {
+        return json;
+    }
+
+    public String entityTag() {
+        return entityTag;
+    }
+
+    public Instant lastModified() {
+        return lastModified;
+    }
+
+    public byte[] gzip() {
+        byte[] encoded = gzip;
+        if (encoded == null) {
+            encoded = compress(json);
+            gzip = encoded;
+        }
+        return encoded;
+    }
+
+    private static byte[] compress(byte[] bytes) {
+        var out = new ByteArrayOutputStream(bytes.length / 4 + 32);
+        try (var gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(bytes);
+        } catch (IOException ex) {
+            // cannot happen with an in-memory stream
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+}
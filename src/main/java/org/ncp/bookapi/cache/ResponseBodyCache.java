@@ -0,0 +1,98 @@
+package org.ncp.bookapi.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.ncp.bookapi.datasource.ReadRouting;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of pre-serialized JSON response bodies, so hot reads skip Jackson entirely.
+ *
+ * Single books are keyed by id and must be invalidated when the book is created or deleted.
+ * Query results are keyed by the catalog version and the query, so a catalog change makes them
+ * unreachable at once; they then age out or are evicted by size.
+ * The size bound counts the JSON bytes; gzip copies are made lazily and are smaller.
+ * Loads read the primary database, never a possibly lagging replica. As in {@link BookCache}, a load runs on
+ * the thread that missed once its pending entry is in the cache, not inside a cache computation, so an
+ * invalidation never waits for a load that may sit in a batching window.
+ */
+@Component
+public class ResponseBodyCache {
+
+    private final AsyncCache<Long, EncodedBody> books;
+    private final AsyncCache<String, EncodedBody> queries;
+    private final int gzipMinBytes;
+
+    @Autowired
+    public ResponseBodyCache(@Value("${bookapi.cache.responses.maximum-bytes:33554432}") long maximumBytes,
+                             @Value("${bookapi.cache.responses.ttl:PT10M}") Duration ttl,
+                             @Value("${bookapi.cache.responses.gzip-min-bytes:2048}") int gzipMinBytes) {
+        this.gzipMinBytes = gzipMinBytes;
+        this.books = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes / 2)
+                .<Long, EncodedBody>weigher((id, body) -> body.json().length)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+        this.queries = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes / 2)
+                .<String, EncodedBody>weigher((query, body) -> query.length() + body.json().length)
+                .expireAfterAccess(ttl)
+                .buildAsync();
+    }
+
+    /**
+     * Returns the encoded book, or encodes the one {@code loader} finds; {@code null} when there is none.
+     * A load racing with {@link #invalidateBook(Long)} is discarded, so a deleted book is never served from here:
+     * the invalidation removes the pending entry, and the load then completes a future the cache no longer holds.
+     */
+    public EncodedBody getBook(Long id, Function<Long, EncodedBody> loader) {
+        return get(books, id, () -> loader.apply(id));
+    }
+
+    public EncodedBody getQuery(String key, Supplier<EncodedBody> loader) {
+        return get(queries, key, loader);
+    }
+
+    /**
+     * Small bodies are sent as they are: gzip would save little and can even grow them.
+     */
+    public boolean worthCompressing(EncodedBody body) {
+        return body.json().length >= gzipMinBytes;
+    }
+
+    public void invalidateBook(Long id) {
+        books.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        books.synchronous().invalidateAll();
+        queries.synchronous().invalidateAll();
+    }
+
+    private static <K> EncodedBody get(AsyncCache<K, EncodedBody> cache, K key, Supplier<EncodedBody> loader) {
+        CompletableFuture<EncodedBody> loading = new CompletableFuture<>();
+        CompletableFuture<EncodedBody> cached = cache.get(key, (k, executor) -> loading);
+        if (cached == loading) {
+            try {
+                // a null body leaves the cache on its own, like a failure
+                loading.complete(ReadRouting.onPrimary(loader));
+            } catch (RuntimeException | Error ex) {
+                loading.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        try {
+            return cached.join();
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+}
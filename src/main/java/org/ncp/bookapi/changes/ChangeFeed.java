@@ -0,0 +1,243 @@
+package org.ncp.bookapi.changes;
+
+import org.ncp.bookapi.datasource.ReadRouting;
+import org.ncp.bookapi.entities.BookChange;
+import org.ncp.bookapi.repositories.BookChangeRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Monotonic log of catalog changes, read by replicas with "everything after sequence number X".
+ *
+ * Sequence numbers are handed out before commit, so a transaction can commit after another one holding
+ * a higher number. Numbers of uncommitted changes are tracked, and readers only see changes below the
+ * lowest of them: a reader that has seen X never misses a change numbered below X later on.
+ * Handing out a number and tracking it is one step under {@link #sequenceLock}. Readers take the same lock
+ * to fix what they may see: below the first uncommitted number and no further than the last number handed out,
+ * since a number handed out after that can still commit before the reader's query runs.
+ * Numbers are taken from {@code book_change_seq} in blocks of {@link #SEQ_BLOCK}, so the lock is held across
+ * one database round trip per block, never across the insert, which runs once the number is tracked.
+ * It is a {@link ReentrantLock}: a virtual thread blocked on JDBC inside {@code synchronized} would pin
+ * its carrier thread. This holds for the writes of this instance only.
+ *
+ * Server-sent-event subscribers are woken up after each commit and pull what they have not seen yet.
+ *
+ * Changes older than {@code bookapi.changes.retention} are pruned; asking for changes from before the
+ * pruned part fails with {@link ChangesPrunedException}. Pruning always keeps the newest change it could
+ * delete, so the log is never emptied by it and a new instance finds what was pruned right below the
+ * oldest change left.
+ */
+@Component
+public class ChangeFeed {
+
+    static final int PAGE_SIZE = 500;
+    // the increment of book_change_seq
+    static final int SEQ_BLOCK = 100;
+
+    private final BookChangeRepository changeRepository;
+    private final Executor executor;
+    private final Duration retention;
+    private final ReentrantLock sequenceLock = new ReentrantLock();
+    private final ConcurrentSkipListSet<Long> uncommitted = new ConcurrentSkipListSet<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile long prunedThrough;
+    // 0 until this instance records its first change; both written under sequenceLock
+    private volatile long firstAssigned;
+    private long lastAssigned;
+    // the rest of the current block of numbers, [nextSeq, blockEnd); guarded by sequenceLock
+    private long nextSeq;
+    private long blockEnd;
+
+    @Autowired
+    public ChangeFeed(BookChangeRepository changeRepository, @Qualifier("applicationTaskExecutor") Executor executor,
+                      @Value("${bookapi.changes.retention:P7D}") Duration retention) {
+        this.changeRepository = changeRepository;
+        this.executor = executor;
+        this.retention = retention;
+        Long oldest = ReadRouting.onPrimary(changeRepository::findMinSeq);
+        this.prunedThrough = oldest == null ? 0 : oldest - 1;
+    }
+
+    /**
+     * Appends the change to the log in the current transaction.
+     */
+    public void record(BookChange change) {
+        boolean transactional = TransactionSynchronizationManager.isSynchronizationActive();
+        long seq;
+        sequenceLock.lock();
+        try {
+            // the number must be tracked before any reader can look
+            seq = nextSeq();
+            change.setSeq(seq);
+            uncommitted.add(seq);
+            if (firstAssigned == 0) {
+                firstAssigned = seq;
+            }
+            lastAssigned = seq;
+        } finally {
+            sequenceLock.unlock();
+        }
+        if (!transactional) {
+            try {
+                changeRepository.save(change);
+            } finally {
+                uncommitted.remove(seq);
+            }
+            wakeUpSubscribers();
+            return;
+        }
+        // registered before the insert, so that a failed insert is untracked when its transaction rolls back
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                uncommitted.remove(seq);
+                // a rollback can also make waiting changes visible
+                wakeUpSubscribers();
+            }
+        });
+        changeRepository.save(change);
+    }
+
+    /**
+     * Returns up to {@code limit} committed changes after {@code since}, in sequence order.
+     *
+     * @throws ChangesPrunedException when changes after {@code since} have been pruned already
+     */
+    public List<BookChange> changesSince(long since, int limit) {
+        checkRetained(since);
+        long before;
+        boolean noneAssigned;
+        sequenceLock.lock();
+        try {
+            Long firstUncommitted = uncommitted.ceiling(Long.MIN_VALUE);
+            before = Math.min(firstUncommitted == null ? Long.MAX_VALUE : firstUncommitted,
+                    lastAssigned == 0 ? Long.MAX_VALUE : lastAssigned + 1);
+            noneAssigned = lastAssigned == 0;
+        } finally {
+            sequenceLock.unlock();
+        }
+        if (before <= since + 1) {
+            return List.of();
+        }
+        // the uncommitted set describes the primary: a replica could be missing committed changes below it
+        List<BookChange> changes = ReadRouting.onPrimary(() ->
+                changeRepository.findBySeqGreaterThanAndSeqLessThanOrderBySeqAsc(since, before, Limit.of(limit)));
+        long first = firstAssigned;
+        if (noneAssigned && first != 0) {
+            // this instance's first numbers were handed out meanwhile: only what was logged before them is settled
+            return changes.stream().takeWhile(change -> change.getSeq() < first).toList();
+        }
+        return changes;
+    }
+
+    /**
+     * Streams every change after {@code since} as a server-sent event named after the change type,
+     * with the sequence number as event id, then keeps pushing new changes as they commit.
+     */
+    public SseEmitter subscribe(long since) {
+        checkRetained(since);
+        SseEmitter emitter = new SseEmitter();
+        Subscription subscription = new Subscription(emitter, since);
+        subscriptions.add(subscription);
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(ex -> subscriptions.remove(subscription));
+        schedule(subscription);
+        return emitter;
+    }
+
+    /**
+     * Deletes the changes older than the retention period but the newest of them, as one prefix of the log.
+     */
+    @Scheduled(initialDelayString = "${bookapi.changes.prune-interval:PT1H}",
+            fixedDelayString = "${bookapi.changes.prune-interval:PT1H}")
+    public void prune() {
+        Long last = ReadRouting.onPrimary(() -> changeRepository.findMaxSeqChangedBefore(Instant.now().minus(retention)));
+        if (last != null && last - 1 > prunedThrough) {
+            // readers are turned away before the rows go, so none reads a log with a hole at its start
+            prunedThrough = last - 1;
+            changeRepository.deleteBySeqLessThanEqual(last - 1);
+        }
+    }
+
+    private void checkRetained(long since) {
+        long pruned = prunedThrough;
+        if (since < pruned) {
+            throw new ChangesPrunedException(since, pruned);
+        }
+    }
+
+    private long nextSeq() {
+        if (nextSeq == blockEnd) {
+            nextSeq = ReadRouting.onPrimary(changeRepository::nextSeqBlock);
+            blockEnd = nextSeq + SEQ_BLOCK;
+        }
+        return nextSeq++;
+    }
+
+    private void wakeUpSubscribers() {
+        for (Subscription subscription : subscriptions) {
+            schedule(subscription);
+        }
+    }
+
+    private void schedule(Subscription subscription) {
+        // only the first wake-up of a burst submits a drain; the others make it go round once more
+        if (subscription.pending.getAndIncrement() == 0) {
+            executor.execute(() -> drain(subscription));
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        do {
+            subscription.pending.set(1);
+            try {
+                List<BookChange> changes;
+                do {
+                    changes = changesSince(subscription.lastSeq, PAGE_SIZE);
+                    for (BookChange change : changes) {
+                        subscription.emitter.send(SseEmitter.event()
+                                .id(change.getSeq().toString())
+                                .name(change.getType().name())
+                                .data(change, MediaType.APPLICATION_JSON));
+                        subscription.lastSeq = change.getSeq();
+                    }
+                } while (changes.size() == PAGE_SIZE);
+            } catch (IOException | RuntimeException ex) {
+                subscriptions.remove(subscription);
+                subscription.emitter.completeWithError(ex);
+                return;
+            }
+        } while (subscription.pending.decrementAndGet() > 0);
+    }
+
+    private static final class Subscription {
+        private final SseEmitter emitter;
+        private final AtomicInteger pending = new AtomicInteger();
+        // only touched by the single drain running for this subscription
+        private volatile long lastSeq;
+
+        Subscription(SseEmitter emitter, long lastSeq) {
+            this.emitter = emitter;
+            this.lastSeq = lastSeq;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package org.ncp.bookapi.changes;
+
+/**
+ * The changes asked for are no longer in the log: a reader this far behind has to start over from the catalog.
+ */
+public class ChangesPrunedException extends RuntimeException {
+
+    public ChangesPrunedException(long since, long prunedThrough) {
+        super("Changes up to " + prunedThrough + " were pruned, cannot serve the changes after " + since);
+    }
+}
@@ -0,0 +1,66 @@
+package org.ncp.bookapi.datasource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool for blocking database work started by async handlers.
+ *
+ * One thread per pooled connection is enough: more threads would only wait for a connection.
+ * A full queue fails the future with a {@link RejectedExecutionException} (503) instead of queueing without end.
+ * The caller's security context goes along, so reads still follow the user's read-your-writes routing.
+ *
+ * Not an {@code Executor} bean on purpose: one would replace Boot's {@code applicationTaskExecutor}.
+ */
+@Component
+public class DatabaseExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    @Autowired
+    public DatabaseExecutor(@Value("${bookapi.db-executor.threads:${spring.datasource.hikari.maximum-pool-size:10}}") int threads,
+                            @Value("${bookapi.db-executor.queue-capacity:1000}") int queueCapacity) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                task -> {
+                    Thread thread = new Thread(task, "db-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> query) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = () -> {
+            try {
+                result.complete(query.get());
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        };
+        try {
+            executor.execute(DelegatingSecurityContextRunnable.create(task, null));
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,38 @@
+package org.ncp.bookapi.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Lets a piece of code insist on the primary database even inside a read-only transaction.
+ *
+ * Anything that keeps what it reads (caches, the change feed cursor) must not read a lagging replica:
+ * a stale row would be served long after the replica caught up.
+ */
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    /**
+     * Runs {@code action} with every connection it opens taken from the primary.
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        Boolean previous = PRIMARY_FORCED.get();
+        PRIMARY_FORCED.set(Boolean.TRUE);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY_FORCED.remove();
+            } else {
+                PRIMARY_FORCED.set(previous);
+            }
+        }
+    }
+
+    static boolean isPrimaryForced() {
+        return PRIMARY_FORCED.get() != null;
+    }
+}
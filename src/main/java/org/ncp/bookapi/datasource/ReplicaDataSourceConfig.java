@@ -0,0 +1,67 @@
+package org.ncp.bookapi.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import java.util.List;
+import javax.sql.DataSource;
+
+/**
+ * Replaces the auto-configured DataSource with a primary/replica router once replicas are configured.
+ * Without {@code bookapi.datasource.replicas}, Spring Boot's single DataSource is used as before.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "bookapi.datasource", name = "replicas[0].url")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaDataSourceConfig {
+
+    /**
+     * The primary, configured by {@code spring.datasource.*} and {@code spring.datasource.hikari.*} as usual.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource, ReplicaProperties properties) {
+        List<DataSource> replicas = properties.replicas().stream()
+                .<DataSource>map(replica -> replicaDataSource(replica, properties.poolSize()))
+                .toList();
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                new ReadYourWrites(properties.stickiness(), 100_000));
+    }
+
+    /**
+     * What JPA, Flyway and everything else get: connections are only taken once the transaction's
+     * read-only flag is known, so the router can pick the right database.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private static HikariDataSource replicaDataSource(ReplicaProperties.Replica replica, int poolSize) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(replica.url())
+                .username(replica.username())
+                .password(replica.password())
+                .build();
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+}
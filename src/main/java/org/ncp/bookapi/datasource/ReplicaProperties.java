@@ -0,0 +1,27 @@
+package org.ncp.bookapi.datasource;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Read replicas of the {@code spring.datasource} primary:
+ * <pre>
+ * bookapi.datasource.replicas[0].url=jdbc:h2:tcp://replica-1/bookapi
+ * bookapi.datasource.replicas[0].username=reader
+ * bookapi.datasource.replicas[0].password=...
+ * bookapi.datasource.stickiness=PT5S
+ * </pre>
+ * {@code stickiness} is how long a user's reads stay on the primary after they wrote; it should cover
+ * the replication lag.
+ */
+@ConfigurationProperties("bookapi.datasource")
+public record ReplicaProperties(@DefaultValue List<Replica> replicas,
+                                @DefaultValue("PT5S") Duration stickiness,
+                                @DefaultValue("10") int poolSize) {
+
+    public record Replica(String url, String username, String password) {
+    }
+}
@@ -1,26 +1,77 @@
 package org.ncp.bookapi.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import java.time.Instant;
+import java.util.Locale;
+import java.util.regex.Pattern;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_book_author_key", columnList = "author_key"),
+        @Index(name = "idx_book_author", columnList = "author"),
+        @Index(name = "idx_book_title", columnList = "title")
+})
 public class Book {
 
-    @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
 
+    // A pooled sequence hands out ids in blocks, so Hibernate can batch inserts (IDENTITY prevents that)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "book_seq")
+    @SequenceGenerator(name = "book_seq", sequenceName = "book_seq", allocationSize = 100)
     private Long id;
     private String title;
     private String author;
 
+    // Author folded by normalizeAuthor(), kept in step by setAuthor(); indexed for case-insensitive lookups
+    @JsonIgnore
+    @Column(name = "author_key")
+    private String authorKey;
+
+    // Optimistic-locking version, bumped by every update; clients send it back in If-Match
+    @Version
+    private Long version;
+
+    // Set on every insert and update; sent as Last-Modified, ignored when a client sends it
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant lastModified;
+
     public Book() {
     }
 
     public Book(String title, String author) {
         this.title = title;
-        this.author = author;
+        setAuthor(author);
+    }
+
+    /**
+     * Lower-cases the author and collapses runs of whitespace, so that "J.R.R.  Tolkien " and
+     * "j.r.r. tolkien" share the same key.
+     */
+    public static String normalizeAuthor(String author) {
+        if (author == null) {
+            return null;
+        }
+        return WHITESPACE.matcher(author.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        lastModified = Instant.now();
     }
 
     public Long getId() {
@@ -45,6 +96,27 @@ public class Book {
 
     public void setAuthor(String author) {
         this.author = author;
+        this.authorKey = normalizeAuthor(author);
+    }
+
+    public String getAuthorKey() {
+        return authorKey;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
     }
 
 }
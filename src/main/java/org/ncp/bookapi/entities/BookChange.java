@@ -0,0 +1,119 @@
+package org.ncp.bookapi.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * One entry of the catalog change log, written in the same transaction as the change itself.
+ * Entries are ordered by {@code seq}; a created entry carries the book as it was inserted,
+ * a deleted entry only its id.
+ *
+ * The sequence number is assigned by the {@code ChangeFeed} before the entry is saved, from {@code book_change_seq}.
+ */
+@Entity
+@Table(name = "book_change")
+public class BookChange implements Persistable<Long> {
+
+    public enum Type { CREATED, DELETED }
+
+    @Id
+    private Long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Column(nullable = false)
+    private Long bookId;
+    private String title;
+    private String author;
+    private Long bookVersion;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+
+    // the id is assigned up front, so it cannot tell a new entry from a saved one
+    @Transient
+    private boolean persisted;
+
+    protected BookChange() {
+    }
+
+    private BookChange(Type type, Long bookId, String title, String author, Long bookVersion) {
+        this.type = type;
+        this.bookId = bookId;
+        this.title = title;
+        this.author = author;
+        this.bookVersion = bookVersion;
+        this.changedAt = Instant.now();
+    }
+
+    public static BookChange created(Book book) {
+        return new BookChange(Type.CREATED, book.getId(), book.getTitle(), book.getAuthor(), book.getVersion());
+    }
+
+    public static BookChange deleted(Long bookId) {
+        return new BookChange(Type.DELETED, bookId, null, null, null);
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    @JsonIgnore
+    @Override
+    public Long getId() {
+        return seq;
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markPersisted() {
+        persisted = true;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getBookId() {
+        return bookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public Long getBookVersion() {
+        return bookVersion;
+    }
+
+    public Instant getChangedAt() {
+        return changedAt;
+    }
+}
@@ -0,0 +1,7 @@
+package org.ncp.bookapi.exceptions;
+
+public class BookVersionMismatchException extends RuntimeException {
+    public BookVersionMismatchException(Long id, Long expectedVersion) {
+        super("Book with id " + id + " is no longer at version " + expectedVersion + ".");
+    }
+}
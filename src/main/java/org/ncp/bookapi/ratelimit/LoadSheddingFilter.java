@@ -0,0 +1,126 @@
+package org.ncp.bookapi.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers 503 right away when more requests are in flight than the {@link ConcurrencyLimiter} allows,
+ * instead of letting them queue for threads and database connections until everyone times out.
+ *
+ * Async requests (the {@code /api/async} reads) count until their response is complete, since that is when
+ * their database work is done. Streams ({@code text/event-stream}, {@code application/x-ndjson}) are the
+ * exception: they count only until their handler returns. They last as long as the client stays, or as long
+ * as the catalog takes to send, which says nothing about how loaded the server is, and a few hundred change
+ * subscribers would otherwise shed every other request.
+ */
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+    static final String SHED_COUNTER = "bookapi.load.shed";
+    private static final List<MediaType> STREAM_TYPES = List.of(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_NDJSON);
+
+    private final boolean enabled;
+    private final ConcurrencyLimiter limiter;
+    private final LongSupplier nanoClock;
+    private final Counter shed;
+
+    public LoadSheddingFilter(LoadSheddingProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.enabled = properties.enabled();
+        this.limiter = new ConcurrencyLimiter(properties.initialLimit(), properties.minLimit(), properties.maxLimit(),
+                properties.targetLatency().toNanos(), nanoClock);
+        this.nanoClock = nanoClock;
+        this.shed = Counter.builder(SHED_COUNTER)
+                .description("Requests answered 503 because the in-flight limit was reached")
+                .register(meterRegistry);
+        Gauge.builder("bookapi.load.limit", limiter, ConcurrencyLimiter::limit)
+                .description("Current adaptive in-flight request limit")
+                .register(meterRegistry);
+        Gauge.builder("bookapi.load.inflight", limiter, ConcurrencyLimiter::inFlight)
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        if (!limiter.tryAcquire()) {
+            shed.increment();
+            RateLimitFilter.reject(response, HttpStatus.SERVICE_UNAVAILABLE, 1, "Server overloaded");
+            return;
+        }
+        long start = nanoClock.getAsLong();
+        boolean releasedOnCompletion = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted() && !isStream(response)) {
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(start));
+                releasedOnCompletion = true;
+            }
+        } finally {
+            if (!releasedOnCompletion) {
+                limiter.release(nanoClock.getAsLong() - start);
+            }
+        }
+    }
+
+    private static boolean isStream(HttpServletResponse response) {
+        String contentType = response.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        MediaType type = MediaType.parseMediaType(contentType);
+        return STREAM_TYPES.stream().anyMatch(type::isCompatibleWith);
+    }
+
+    /**
+     * Releases the permit of an async request once its response is complete; the container calls
+     * {@code onComplete} after a timeout or an error too.
+     */
+    private final class ReleaseOnCompletion implements AsyncListener {
+
+        private final long start;
+
+        ReleaseOnCompletion(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limiter.release(nanoClock.getAsLong() - start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // a new async cycle of the same request: keep listening until it completes
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.ncp.bookapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Bounds of the adaptive in-flight limit (see {@link ConcurrencyLimiter}). Requests slower than
+ * {@code target-latency} shrink the limit, faster ones let it grow back.
+ */
+@ConfigurationProperties("bookapi.load-shedding")
+public record LoadSheddingProperties(@DefaultValue("true") boolean enabled,
+                                     @DefaultValue("100") int initialLimit,
+                                     @DefaultValue("20") int minLimit,
+                                     @DefaultValue("400") int maxLimit,
+                                     @DefaultValue("500ms") Duration targetLatency) {
+}
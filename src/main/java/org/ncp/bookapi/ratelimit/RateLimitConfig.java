@@ -0,0 +1,24 @@
+package org.ncp.bookapi.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The filters are added to the security chain by {@code SecurityConfig}, right after {@code JwtAuthFilter}.
+ */
+@Configuration
+@EnableConfigurationProperties({RateLimitProperties.class, LoadSheddingProperties.class})
+public class RateLimitConfig {
+
+    @Bean
+    public RateLimitFilter rateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        return new RateLimitFilter(properties, meterRegistry, System::nanoTime);
+    }
+
+    @Bean
+    public LoadSheddingFilter loadSheddingFilter(LoadSheddingProperties properties, MeterRegistry meterRegistry) {
+        return new LoadSheddingFilter(properties, meterRegistry, System::nanoTime);
+    }
+}
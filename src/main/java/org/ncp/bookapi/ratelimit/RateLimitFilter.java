@@ -0,0 +1,117 @@
+package org.ncp.bookapi.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers 429 with {@code Retry-After} once a client has spent its budget for the route.
+ *
+ * Runs after {@code JwtAuthFilter}, so authenticated clients are limited per user wherever they connect from,
+ * and anonymous ones (logins included) per remote address. Behind a proxy, set
+ * {@code server.forward-headers-strategy} so the remote address is the client's.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    static final String REJECTED_COUNTER = "bookapi.ratelimit.rejected";
+
+    private final boolean enabled;
+    private final List<LimitedRoute> routes = new ArrayList<>();
+    private final LimitedRoute defaultRoute;
+
+    public RateLimitFilter(RateLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.enabled = properties.enabled();
+        for (RateLimitProperties.Route route : properties.routes()) {
+            routes.add(new LimitedRoute(route.method(), PathPatternParser.defaultInstance.parse(route.pattern()),
+                    new RateLimiter(route.permitsPerSecond(), route.burst(), properties.maximumClients(), nanoClock),
+                    rejectedCounter(meterRegistry, route.pattern())));
+        }
+        RateLimitProperties.Budget budget = properties.defaultBudget();
+        this.defaultRoute = new LimitedRoute(null, null,
+                new RateLimiter(budget.permitsPerSecond(), budget.burst(), properties.maximumClients(), nanoClock),
+                rejectedCounter(meterRegistry, "default"));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || request.getRequestURI().startsWith("/actuator/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain)
+            throws ServletException, IOException {
+
+        LimitedRoute route = routeFor(request);
+        long waitNanos = route.limiter().tryAcquire(clientKey(request));
+        if (waitNanos > 0) {
+            route.rejected().increment();
+            long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds, "Rate limit exceeded");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    /**
+     * Writes the error directly: a {@code sendError} dispatch to {@code /error} would run the chain again.
+     */
+    static void reject(HttpServletResponse response, HttpStatus status, long retryAfterSeconds, String detail)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        response.getWriter().write("{\"status\":" + status.value() + ",\"title\":\"" + status.getReasonPhrase()
+                + "\",\"detail\":\"" + detail + "\"}");
+    }
+
+    private LimitedRoute routeFor(HttpServletRequest request) {
+        PathContainer path = PathContainer.parsePath(request.getRequestURI());
+        for (LimitedRoute route : routes) {
+            if ((route.method() == null || route.method().equalsIgnoreCase(request.getMethod()))
+                    && route.pattern().matches(path)) {
+                return route;
+            }
+        }
+        return defaultRoute;
+    }
+
+    private static String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated()
+                && !(authentication instanceof AnonymousAuthenticationToken)) {
+            return "user:" + authentication.getName();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String route) {
+        return Counter.builder(REJECTED_COUNTER)
+                .description("Requests answered 429 because the client was over its budget")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    private record LimitedRoute(String method, PathPattern pattern, RateLimiter limiter, Counter rejected) {
+    }
+}
@@ -0,0 +1,33 @@
+package org.ncp.bookapi.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Per-client request budgets. A client is the authenticated user, or the remote address for anonymous calls.
+ * <pre>
+ * bookapi.rate-limit.routes[0].method=POST
+ * bookapi.rate-limit.routes[0].pattern=/api/auth/login
+ * bookapi.rate-limit.routes[0].permits-per-second=0.5
+ * bookapi.rate-limit.routes[0].burst=10
+ * </pre>
+ * The first matching route applies; a request matching none spends from {@code default-budget}.
+ * Every route has its own buckets, so a client's searches do not use up its budget for reads.
+ */
+@ConfigurationProperties("bookapi.rate-limit")
+public record RateLimitProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue List<Route> routes,
+                                  @DefaultValue Budget defaultBudget,
+                                  @DefaultValue("100000") long maximumClients) {
+
+    /**
+     * {@code method} is optional; {@code pattern} is a Spring MVC path pattern.
+     */
+    public record Route(String method, String pattern, double permitsPerSecond, int burst) {
+    }
+
+    public record Budget(@DefaultValue("50") double permitsPerSecond, @DefaultValue("100") int burst) {
+    }
+}
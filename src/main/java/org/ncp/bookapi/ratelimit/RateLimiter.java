@@ -0,0 +1,60 @@
+package org.ncp.bookapi.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket per key, implemented as GCRA (generic cell rate algorithm).
+ *
+ * Each key only stores the time its bucket would be full again (the theoretical arrival time) in an
+ * {@link AtomicLong}, so taking a token is one compare-and-set, without locks. Keys live in a bounded
+ * concurrent map whose segments are locked only while a new key is added; idle keys expire once their
+ * bucket would be full again anyway.
+ */
+public class RateLimiter {
+
+    private static final long FRESH = Long.MIN_VALUE;
+
+    private final long emissionIntervalNanos;
+    private final long burstNanos;
+    private final LongSupplier nanoClock;
+    private final Cache<String, AtomicLong> buckets;
+
+    public RateLimiter(double permitsPerSecond, int burst, long maximumKeys, LongSupplier nanoClock) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("A rate limit needs a positive rate and a burst of at least 1");
+        }
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burstNanos = emissionIntervalNanos * burst;
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maximumKeys)
+                .expireAfterAccess(Duration.ofNanos(Math.max(burstNanos, TimeUnit.SECONDS.toNanos(1))))
+                .build();
+    }
+
+    /**
+     * Takes a token for the key. Returns zero when it was granted, otherwise how long to wait, in nanoseconds,
+     * before one will be available.
+     */
+    public long tryAcquire(String key) {
+        AtomicLong bucket = buckets.get(key, k -> new AtomicLong(FRESH));
+        while (true) {
+            long now = nanoClock.getAsLong();
+            long arrival = bucket.get();
+            long next = (arrival == FRESH ? now : Math.max(arrival, now)) + emissionIntervalNanos;
+            long allowedFrom = next - burstNanos;
+            if (now < allowedFrom) {
+                return allowedFrom - now;
+            }
+            if (bucket.compareAndSet(arrival, next)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package org.ncp.bookapi.repositories;
+
+/**
+ * Row of {@link BookRepository#countByAuthorKey()}.
+ */
+public interface AuthorKeyCount {
+
+    String getAuthorKey();
+
+    long getBooks();
+}
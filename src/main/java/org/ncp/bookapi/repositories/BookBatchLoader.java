@@ -0,0 +1,166 @@
+package org.ncp.bookapi.repositories;
+
+import org.ncp.bookapi.entities.Book;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Loads single books by id, merging the lookups that arrive within a short window into one {@code IN} query.
+ *
+ * A lookup with no other lookup in progress is read on its own straight away: batching only pays off under
+ * contention, and a lone lookup should not wait for company. Otherwise the first lookup of a window leads:
+ * it waits for the window to close (or for the batch to fill up), then runs the query on its own thread and
+ * hands every waiting lookup its book. Lookups arriving meanwhile just join the batch. Callers see a plain
+ * blocking {@link #load(Long)}, so chatty clients get batching without any change on their side.
+ * A zero window turns batching off.
+ */
+@Component
+public class BookBatchLoader {
+
+    private final BookRepository bookRepository;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final AtomicReference<Batch> open = new AtomicReference<>();
+    private final AtomicInteger inProgress = new AtomicInteger();
+
+    @Autowired
+    public BookBatchLoader(BookRepository bookRepository,
+                           @Value("${bookapi.books.batch-lookup.window:1ms}") Duration window,
+                           @Value("${bookapi.books.batch-lookup.max-size:200}") int maxBatchSize) {
+        this.bookRepository = bookRepository;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public Optional<Book> load(Long id) {
+        if (windowNanos <= 0) {
+            return bookRepository.findById(id);
+        }
+        if (inProgress.incrementAndGet() == 1) {
+            try {
+                return bookRepository.findById(id);
+            } finally {
+                inProgress.decrementAndGet();
+            }
+        }
+        try {
+            return loadBatched(id);
+        } finally {
+            inProgress.decrementAndGet();
+        }
+    }
+
+    private Optional<Book> loadBatched(Long id) {
+        while (true) {
+            Batch batch = open.get();
+            if (batch == null) {
+                Batch created = new Batch();
+                if (open.compareAndSet(null, created)) {
+                    CompletableFuture<Optional<Book>> book = created.add(id);
+                    lead(created);
+                    return await(book);
+                }
+                continue;
+            }
+            CompletableFuture<Optional<Book>> book = batch.add(id);
+            if (book != null) {
+                return await(book);
+            }
+            // the batch closed before this lookup got in; join or start the next one
+        }
+    }
+
+    private void lead(Batch batch) {
+        long deadline = System.nanoTime() + windowNanos;
+        long remaining;
+        while (!batch.isClosed() && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        Map<Long, CompletableFuture<Optional<Book>>> lookups = batch.close();
+        open.compareAndSet(batch, null);
+        try {
+            Map<Long, Book> found = new LinkedHashMap<>();
+            bookRepository.findAllById(lookups.keySet()).forEach(book -> found.put(book.getId(), book));
+            lookups.forEach((id, book) -> book.complete(Optional.ofNullable(found.get(id))));
+        } catch (Throwable ex) {
+            // errors too: a follower left without an outcome would wait in join() forever
+            lookups.values().forEach(book -> book.completeExceptionally(ex));
+            if (ex instanceof Error error) {
+                throw error;
+            }
+        }
+    }
+
+    private static Optional<Book> await(CompletableFuture<Optional<Book>> book) {
+        try {
+            return book.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw ex.getCause() instanceof RuntimeException cause ? cause : ex;
+        }
+    }
+
+    private final class Batch {
+
+        private final Thread leader = Thread.currentThread();
+        // not synchronized: lookups run on virtual threads under the virtual-threads profile
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<Long, CompletableFuture<Optional<Book>>> lookups = new LinkedHashMap<>();
+        private boolean closed;
+
+        /**
+         * Returns the future of the id's book, shared by every lookup of the same id; {@code null} once closed.
+         */
+        CompletableFuture<Optional<Book>> add(Long id) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return null;
+                }
+                CompletableFuture<Optional<Book>> book = lookups.computeIfAbsent(id, key -> new CompletableFuture<>());
+                if (lookups.size() >= maxBatchSize) {
+                    // full: the next lookup starts a new batch, and the leader queries right away
+                    closed = true;
+                    open.compareAndSet(this, null);
+                    LockSupport.unpark(leader);
+                }
+                return book;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isClosed() {
+            lock.lock();
+            try {
+                return closed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Map<Long, CompletableFuture<Optional<Book>>> close() {
+            lock.lock();
+            try {
+                closed = true;
+                return lookups;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
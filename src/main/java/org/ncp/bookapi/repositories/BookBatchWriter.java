@@ -0,0 +1,73 @@
+package org.ncp.bookapi.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.ncp.bookapi.changes.ChangeFeed;
+import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.entities.BookChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Writes books in chunks, one transaction per chunk.
+ * Inserts are flushed as JDBC batches of {@code hibernate.jdbc.batch_size} rows,
+ * and the persistence context is cleared after each chunk so it never grows with the input.
+ * Each chunk writes its change log entries in its own transaction.
+ */
+@Repository
+public class BookBatchWriter {
+
+    private final BookRepository bookRepository;
+    private final ChangeFeed changeFeed;
+    private final int batchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public BookBatchWriter(BookRepository bookRepository, ChangeFeed changeFeed,
+                           @Value("${bookapi.bulk.batch-size:500}") int batchSize) {
+        this.bookRepository = bookRepository;
+        this.changeFeed = changeFeed;
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Inserts the books and returns them, detached, with their generated ids.
+     */
+    @Transactional
+    public List<Book> insertChunk(List<Book> books) {
+        for (Book book : books) {
+            entityManager.persist(book);
+            changeFeed.record(BookChange.created(book));
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return books;
+    }
+
+    /**
+     * Deletes the books and logs a change for each one that existed; returns the ids of those.
+     * A book deleted concurrently by another request can be logged and returned twice;
+     * consumers treat deletes as idempotent.
+     */
+    @Transactional
+    public List<Long> deleteChunk(Collection<Long> ids) {
+        List<Long> existing = bookRepository.findExistingIds(ids);
+        if (existing.isEmpty()) {
+            return List.of();
+        }
+        bookRepository.deleteByIdIn(existing);
+        existing.forEach(id -> changeFeed.record(BookChange.deleted(id)));
+        return existing;
+    }
+}
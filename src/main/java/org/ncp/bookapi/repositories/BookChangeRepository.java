@@ -0,0 +1,48 @@
+package org.ncp.bookapi.repositories;
+
+import org.ncp.bookapi.entities.BookChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface BookChangeRepository extends JpaRepository<BookChange, Long>
+{
+    /**
+     * The next {@code limit} changes after {@code since}, stopping before {@code before}.
+     */
+    List<BookChange> findBySeqGreaterThanAndSeqLessThanOrderBySeqAsc(Long since, Long before, Limit limit);
+
+    /**
+     * The highest sequence number of the changes made before {@code cutoff}, or {@code null} when there are none.
+     */
+    @Query("select max(c.seq) from BookChange c where c.changedAt < :cutoff")
+    Long findMaxSeqChangedBefore(@Param("cutoff") Instant cutoff);
+
+    /**
+     * The lowest sequence number still logged, or {@code null} when the log is empty.
+     */
+    @Query("select min(c.seq) from BookChange c")
+    Long findMinSeq();
+
+    /**
+     * The first of the next block of sequence numbers ({@code book_change_seq} increments by the block size).
+     */
+    @Query(value = "select next value for book_change_seq", nativeQuery = true)
+    long nextSeqBlock();
+
+    /**
+     * Deletes the changes up to and including {@code seq}.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from BookChange c where c.seq <= :seq")
+    int deleteBySeqLessThanEqual(@Param("seq") Long seq);
+}
@@ -1,14 +1,81 @@
 package org.ncp.bookapi.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.ncp.bookapi.entities.Book;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long>
 {
     List<Book> findByAuthor(String author);
+    @Transactional(readOnly = true)
+    List<Book> findByAuthorKey(String authorKey);
     List<Book> findByTitleContaining(String keyword);
+
+    /**
+     * Keyset page: the next {@code limit} books whose id is greater than the given cursor.
+     */
+    @Transactional(readOnly = true)
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Reads the whole catalog through a JDBC cursor, fetching rows from the driver in fixed-size chunks.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select b from Book b order by b.id")
+    Stream<Book> streamAllOrderedById();
+
+    /**
+     * The ids among the given ones that belong to an existing book.
+     */
+    @Query("select b.id from Book b where b.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes all the given books with a single statement and returns how many rows were removed.
+     */
+    @Modifying
+    @Query("delete from Book b where b.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Deletes the book with a single statement, without loading it first.
+     * Returns 1 when it was deleted, 0 when there was no such book.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Book b where b.id = :id")
+    int deleteBookById(@Param("id") Long id);
+
+    /**
+     * Deletes the book only if it is still at the given version.
+     * Returns 0 when the book is missing or has been changed since.
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Book b where b.id = :id and b.version = :version")
+    int deleteBookByIdAndVersion(@Param("id") Long id, @Param("version") Long version);
+
+    /**
+     * Number of books of every author, by normalized name; books without an author are left out.
+     */
+    @Query("select b.authorKey as authorKey, count(b) as books from Book b"
+            + " where b.authorKey is not null and b.authorKey <> '' group by b.authorKey")
+    List<AuthorKeyCount> countByAuthorKey();
 }
@@ -0,0 +1,7 @@
+package org.ncp.bookapi.search;
+
+/**
+ * An author, as first written in the catalog, and the number of books indexed for them.
+ */
+public record AuthorCount(String author, long count) {
+}
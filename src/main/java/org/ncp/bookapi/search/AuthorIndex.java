@@ -0,0 +1,232 @@
+package org.ncp.bookapi.search;
+
+import org.ncp.bookapi.entities.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * In-memory, sorted map of normalized author names to their book counts, for typeahead and catalog statistics.
+ *
+ * A prefix query is a range scan of the sorted keys that keeps the N authors with the most books,
+ * so it never touches the database. The same counts are also kept ordered by count, so the top K authors
+ * of the whole catalog are the first K entries. Reads are lock-free; writes are serialized.
+ * The author of every indexed book is remembered by id, because deletes only know the id;
+ * books share the key instance of their author rather than holding a copy each.
+ *
+ * A full rebuild fills a separate index ({@link #beginRebuild}) that is merged in ({@link #install})
+ * with the writes made meanwhile replayed on top, so no concurrent write is lost.
+ */
+@Component
+public class AuthorIndex {
+
+    static final Comparator<AuthorCount> MOST_BOOKS_FIRST = Comparator.comparingLong(AuthorCount::count).reversed()
+            .thenComparing(AuthorCount::author);
+
+    // key of the books indexed without an author, which count towards the total only
+    private static final String NO_AUTHOR = "";
+
+    private final ConcurrentSkipListMap<String, AuthorCount> authors = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<AuthorCount> byCount = new ConcurrentSkipListSet<>(MOST_BOOKS_FIRST);
+    private final Map<Long, String> authorKeyByBook = new HashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile int bookCount;
+    private List<Runnable> writesDuringRebuild;
+
+    /**
+     * Counts the book for its author, or moves it to the new author when it was indexed before.
+     */
+    public void add(Long id, String author) {
+        if (id == null) {
+            return;
+        }
+        String key = Book.normalizeAuthor(author);
+        write(() -> {
+            String canonicalKey = key == null || key.isEmpty() ? NO_AUTHOR : canonical(key);
+            String previousKey = authorKeyByBook.put(id, canonicalKey);
+            if (previousKey != null) {
+                decrement(previousKey);
+            }
+            bookCount = authorKeyByBook.size();
+            if (!canonicalKey.isEmpty()) {
+                update(canonicalKey, current -> current == null
+                        ? new AuthorCount(author.trim(), 1)
+                        : new AuthorCount(current.author(), current.count() + 1));
+            }
+        });
+    }
+
+    public void remove(Long id) {
+        if (id == null) {
+            return;
+        }
+        write(() -> {
+            String key = authorKeyByBook.remove(id);
+            if (key != null) {
+                decrement(key);
+            }
+            bookCount = authorKeyByBook.size();
+        });
+    }
+
+    /**
+     * Starts a full rebuild: returns an empty index to fill, to be passed to {@link #install} (or dropped with
+     * {@link #abandonRebuild}). Until then, the writes made to this index are remembered to be replayed.
+     */
+    public AuthorIndex beginRebuild() {
+        writeLock.lock();
+        try {
+            writesDuringRebuild = new ArrayList<>();
+        } finally {
+            writeLock.unlock();
+        }
+        return new AuthorIndex();
+    }
+
+    /**
+     * Brings this index in line with one built on the side, then replays the writes made since
+     * {@link #beginRebuild}, which the rebuild may or may not have seen. Only the authors whose count differs
+     * change, so readers never see the index empty or half built. Returns whether any count changed.
+     */
+    public boolean install(AuthorIndex rebuilt) {
+        writeLock.lock();
+        try {
+            Map<String, Long> before = countsByKey();
+            long booksBefore = bookCount;
+            for (String key : authors.keySet()) {
+                if (!rebuilt.authors.containsKey(key)) {
+                    update(key, current -> null);
+                }
+            }
+            rebuilt.authors.forEach((key, author) -> {
+                if (!author.equals(authors.get(key))) {
+                    update(key, current -> author);
+                }
+            });
+            authorKeyByBook.clear();
+            rebuilt.authorKeyByBook.forEach((id, key) -> authorKeyByBook.put(id, key.isEmpty() ? NO_AUTHOR : canonical(key)));
+            bookCount = authorKeyByBook.size();
+            List<Runnable> writes = writesDuringRebuild;
+            writesDuringRebuild = null;
+            if (writes != null) {
+                writes.forEach(Runnable::run);
+            }
+            return booksBefore != bookCount || !before.equals(countsByKey());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void abandonRebuild() {
+        writeLock.lock();
+        try {
+            writesDuringRebuild = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} authors whose normalized name starts with the prefix, most books first.
+     */
+    public List<AuthorCount> complete(String prefix, int limit) {
+        String key = Book.normalizeAuthor(prefix);
+        if (key == null || key.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        // keeps the best `limit` authors, weakest one at the head so it can be evicted
+        PriorityQueue<AuthorCount> best = new PriorityQueue<>(MOST_BOOKS_FIRST.reversed());
+        for (AuthorCount author : authors.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            best.offer(author);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        List<AuthorCount> result = new ArrayList<>(best);
+        result.sort(MOST_BOOKS_FIRST);
+        return result;
+    }
+
+    /**
+     * The {@code limit} authors with the most books in the whole catalog, read off the head of the
+     * count-ordered set: O(limit), plus O(log N) per write to keep it ordered.
+     */
+    public List<AuthorCount> top(int limit) {
+        List<AuthorCount> result = new ArrayList<>(Math.min(limit, 64));
+        for (AuthorCount author : byCount) {
+            if (result.size() == limit) {
+                break;
+            }
+            result.add(author);
+        }
+        return result;
+    }
+
+    /**
+     * Number of indexed books, with or without an author.
+     */
+    public long bookCount() {
+        return bookCount;
+    }
+
+    public long authorCount() {
+        return authors.size();
+    }
+
+    /**
+     * Book count of every author by normalized name, to compare with the database.
+     */
+    public Map<String, Long> countsByKey() {
+        Map<String, Long> counts = new HashMap<>(authors.size() * 2);
+        authors.forEach((key, author) -> counts.put(key, author.count()));
+        return counts;
+    }
+
+    private void write(Runnable write) {
+        writeLock.lock();
+        try {
+            write.run();
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.add(write);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private String canonical(String key) {
+        String existing = authors.ceilingKey(key);
+        return key.equals(existing) ? existing : key;
+    }
+
+    private void decrement(String key) {
+        if (!key.isEmpty()) {
+            update(key, current -> current == null || current.count() <= 1
+                    ? null
+                    : new AuthorCount(current.author(), current.count() - 1));
+        }
+    }
+
+    private void update(String key, UnaryOperator<AuthorCount> change) {
+        AuthorCount previous = authors.get(key);
+        AuthorCount next = change.apply(previous);
+        if (previous != null) {
+            byCount.remove(previous);
+        }
+        if (next == null) {
+            authors.remove(key);
+        } else {
+            authors.put(key, next);
+            byCount.add(next);
+        }
+    }
+}
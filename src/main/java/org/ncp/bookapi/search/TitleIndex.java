@@ -0,0 +1,411 @@
+package org.ncp.bookapi.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over book titles.
+ *
+ * Titles are case-folded and split into overlapping trigrams ("harry" -> "har", "arr", "rry").
+ * A keyword query intersects the posting lists of its own trigrams, so only books that can
+ * contain the keyword are looked at, instead of scanning the whole table with {@code LIKE '%kw%'}.
+ * Keywords shorter than a trigram have no trigrams of their own; they only match at the start of a word,
+ * and are answered from the words starting with them rather than by checking every title.
+ *
+ * Matches are ranked: a title that starts with the keyword first, then whole-word matches,
+ * then word-prefix matches, then plain substrings; ties go to the shorter title, then the lower id.
+ *
+ * Typo-tolerant queries ({@link #fuzzySearch}) go through a second, word-level index: every query word is
+ * looked up among the distinct title words by their trigrams, then the books having a close enough word
+ * for each query word are intersected.
+ *
+ * A full rebuild fills a separate index ({@link #beginRebuild}) and swaps it in ({@link #install}), replaying
+ * the writes made meanwhile, so searches keep seeing a complete index and no concurrent write is lost.
+ */
+@Component
+public class TitleIndex {
+
+    static final int GRAM_LENGTH = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // kept across rebuilds, like a meter
+    private final LongAdder fuzzyWordsVerified = new LongAdder();
+    private Map<Long, String> titles = new HashMap<>();
+    private Map<String, PostingList> grams = new HashMap<>();
+    private WordIndex wordIndex = new WordIndex();
+    private List<Runnable> writesDuringRebuild;
+
+    /**
+     * Indexes (or re-indexes) the title of a book.
+     */
+    public void add(Long id, String title) {
+        if (id == null || title == null) {
+            return;
+        }
+        String normalized = normalize(title);
+        write(() -> index(id, normalized));
+    }
+
+    public void remove(Long id) {
+        if (id == null) {
+            return;
+        }
+        write(() -> {
+            String previous = titles.remove(id);
+            if (previous != null) {
+                unindex(id, previous);
+            }
+        });
+    }
+
+    /**
+     * Starts a full rebuild: returns an empty index to fill, to be passed to {@link #install} (or dropped with
+     * {@link #abandonRebuild}). Until then, the writes made to this index are remembered to be replayed.
+     */
+    public TitleIndex beginRebuild() {
+        lock.writeLock().lock();
+        try {
+            writesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return new TitleIndex();
+    }
+
+    /**
+     * Takes over the contents of the rebuilt index, then replays the writes made since {@link #beginRebuild},
+     * since the rebuild may or may not have seen them.
+     */
+    public void install(TitleIndex rebuilt) {
+        lock.writeLock().lock();
+        rebuilt.lock.readLock().lock();
+        try {
+            titles = rebuilt.titles;
+            grams = rebuilt.grams;
+            wordIndex = rebuilt.wordIndex;
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.forEach(Runnable::run);
+                writesDuringRebuild = null;
+            }
+        } finally {
+            rebuilt.lock.readLock().unlock();
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void abandonRebuild() {
+        lock.writeLock().lock();
+        try {
+            writesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns one page of ids of the books whose title contains the keyword, ignoring case, best match first.
+     */
+    public List<Long> search(String keyword, int page, int size) {
+        String query = normalize(keyword);
+        if (query.isEmpty() || size <= 0 || page < 0) {
+            return List.of();
+        }
+        int wanted = (int) Math.min((long) (page + 1) * size, Integer.MAX_VALUE);
+        // keeps the best `wanted` matches, worst one at the head so it can be evicted
+        PriorityQueue<Match> best = new PriorityQueue<>(Match.RANKING.reversed());
+
+        lock.readLock().lock();
+        try {
+            if (query.length() < GRAM_LENGTH) {
+                Set<Long> seen = new HashSet<>();
+                for (PostingList list : wordIndex.titlesWithWordsStartingWith(query)) {
+                    for (int i = 0; i < list.size(); i++) {
+                        long id = list.get(i);
+                        if (seen.add(id)) {
+                            offer(best, wanted, id, titles.get(id), query);
+                        }
+                    }
+                }
+            } else {
+                List<PostingList> postings = postingsOf(query);
+                if (postings.isEmpty()) {
+                    return List.of();
+                }
+                PostingList smallest = postings.get(0);
+                for (int i = 0; i < smallest.size(); i++) {
+                    long id = smallest.get(i);
+                    if (containedInAll(postings, id)) {
+                        offer(best, wanted, id, titles.get(id), query);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Match> ranked = new ArrayList<>(best);
+        ranked.sort(Match.RANKING);
+        int from = Math.min(page * size, ranked.size());
+        List<Long> ids = new ArrayList<>(ranked.size() - from);
+        for (Match match : ranked.subList(from, ranked.size())) {
+            ids.add(match.id());
+        }
+        return ids;
+    }
+
+    /**
+     * Typo-tolerant search: one page of ids of the books whose title has, for every word of the query,
+     * a word within {@link #maxEdits} edits of it ("hary poter" finds "Harry Potter"); fewest edits first,
+     * then the shorter title. Query words shorter than a trigram are ignored.
+     */
+    public List<Long> fuzzySearch(String text, int page, int size) {
+        List<String> queryWords = fuzzyWords(normalize(text));
+        if (queryWords.isEmpty() || size <= 0 || page < 0) {
+            return List.of();
+        }
+        int wanted = (int) Math.min((long) (page + 1) * size, Integer.MAX_VALUE);
+        PriorityQueue<FuzzyMatch> best = new PriorityQueue<>(FuzzyMatch.RANKING.reversed());
+
+        lock.readLock().lock();
+        try {
+            List<List<WordIndex.Similar>> similarWords = new ArrayList<>(queryWords.size());
+            for (String word : queryWords) {
+                List<WordIndex.Similar> similar = wordIndex.similar(word, maxEdits(word), fuzzyWordsVerified);
+                if (similar.isEmpty()) {
+                    return List.of();
+                }
+                similarWords.add(similar);
+            }
+            // the books of the rarest query word are the candidates, the others are only probed
+            similarWords.sort(Comparator.comparingLong(TitleIndex::bookCount));
+            Map<Long, Integer> candidates = new HashMap<>();
+            for (WordIndex.Similar similar : similarWords.get(0)) {
+                for (int i = 0; i < similar.titles().size(); i++) {
+                    candidates.merge(similar.titles().get(i), similar.edits(), Math::min);
+                }
+            }
+            candidates.forEach((id, firstWordEdits) -> {
+                int edits = firstWordEdits;
+                for (int w = 1; w < similarWords.size() && edits >= 0; w++) {
+                    int wordEdits = fewestEdits(similarWords.get(w), id);
+                    edits = wordEdits < 0 ? -1 : edits + wordEdits;
+                }
+                if (edits >= 0) {
+                    best.offer(new FuzzyMatch(id, edits, titles.get(id).length()));
+                    if (best.size() > wanted) {
+                        best.poll();
+                    }
+                }
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<FuzzyMatch> ranked = new ArrayList<>(best);
+        ranked.sort(FuzzyMatch.RANKING);
+        int from = Math.min(page * size, ranked.size());
+        List<Long> ids = new ArrayList<>(ranked.size() - from);
+        for (FuzzyMatch match : ranked.subList(from, ranked.size())) {
+            ids.add(match.id());
+        }
+        return ids;
+    }
+
+    public TitleIndexStats stats() {
+        lock.readLock().lock();
+        try {
+            long postings = 0;
+            int largest = 0;
+            long bytes = 0;
+            for (Map.Entry<String, PostingList> entry : grams.entrySet()) {
+                PostingList list = entry.getValue();
+                postings += list.size();
+                largest = Math.max(largest, list.size());
+                // map node + gram string + posting list
+                bytes += 32 + 48 + list.estimatedBytes();
+            }
+            for (String title : titles.values()) {
+                // map node + boxed id + title string
+                bytes += 32 + 16 + 40 + title.length();
+            }
+            bytes += wordIndex.estimatedBytes();
+            double average = grams.isEmpty() ? 0 : (double) postings / grams.size();
+            return new TitleIndexStats(titles.size(), grams.size(), wordIndex.size(), postings, largest, average, bytes,
+                    fuzzyWordsVerified.sum());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<PostingList> postingsOf(String query) {
+        List<PostingList> postings = new ArrayList<>();
+        for (String gram : gramsOf(query)) {
+            PostingList list = grams.get(gram);
+            if (list == null) {
+                return List.of();
+            }
+            postings.add(list);
+        }
+        postings.sort(Comparator.comparingInt(PostingList::size));
+        return postings;
+    }
+
+    private void write(Runnable write) {
+        lock.writeLock().lock();
+        try {
+            write.run();
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.add(write);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(Long id, String normalized) {
+        String previous = titles.put(id, normalized);
+        if (previous != null) {
+            unindex(id, previous);
+        }
+        for (String gram : gramsOf(normalized)) {
+            grams.computeIfAbsent(gram, g -> new PostingList()).add(id);
+        }
+        wordIndex.add(id, normalized);
+    }
+
+    private void unindex(Long id, String normalizedTitle) {
+        for (String gram : gramsOf(normalizedTitle)) {
+            PostingList list = grams.get(gram);
+            if (list != null && list.remove(id) && list.isEmpty()) {
+                grams.remove(gram);
+            }
+        }
+        wordIndex.remove(id, normalizedTitle);
+    }
+
+    private static boolean containedInAll(List<PostingList> postings, long id) {
+        for (int i = 1; i < postings.size(); i++) {
+            if (!postings.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Edits allowed in a query word: one up to five letters, two beyond.
+     */
+    static int maxEdits(String word) {
+        return word.length() <= 5 ? 1 : 2;
+    }
+
+    private static long bookCount(List<WordIndex.Similar> similarWords) {
+        long count = 0;
+        for (WordIndex.Similar similar : similarWords) {
+            count += similar.titles().size();
+        }
+        return count;
+    }
+
+    /**
+     * Fewest edits among the similar words that the book's title contains, or -1 when it contains none of them.
+     */
+    private static int fewestEdits(List<WordIndex.Similar> similarWords, long id) {
+        int fewest = -1;
+        for (WordIndex.Similar similar : similarWords) {
+            if ((fewest < 0 || similar.edits() < fewest) && similar.titles().contains(id)) {
+                fewest = similar.edits();
+            }
+        }
+        return fewest;
+    }
+
+    /**
+     * The distinct words of a normalized query long enough to have trigrams.
+     */
+    private static List<String> fuzzyWords(String normalized) {
+        List<String> words = new ArrayList<>();
+        for (String word : WordIndex.wordsOf(normalized)) {
+            if (word.length() >= GRAM_LENGTH) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static void offer(PriorityQueue<Match> best, int wanted, long id, String title, String query) {
+        int position = title.indexOf(query);
+        if (position < 0) {
+            return;
+        }
+        best.offer(new Match(id, rank(title, query, position), title.length()));
+        if (best.size() > wanted) {
+            best.poll();
+        }
+    }
+
+    /**
+     * Lower is better: 0 title prefix, 1 whole word, 2 word prefix, 3 anywhere else.
+     */
+    private static int rank(String title, String query, int firstPosition) {
+        if (firstPosition == 0) {
+            return 0;
+        }
+        int best = 3;
+        for (int position = firstPosition; position >= 0; position = title.indexOf(query, position + 1)) {
+            if (isWordStart(title, position)) {
+                if (isWordEnd(title, position + query.length())) {
+                    return 1;
+                }
+                best = 2;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isWordStart(String title, int position) {
+        return position == 0 || !Character.isLetterOrDigit(title.charAt(position - 1));
+    }
+
+    private static boolean isWordEnd(String title, int end) {
+        return end == title.length() || !Character.isLetterOrDigit(title.charAt(end));
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> gramsOf(String normalized) {
+        if (normalized.length() < GRAM_LENGTH) {
+            return List.of();
+        }
+        List<String> result = new ArrayList<>(normalized.length() - GRAM_LENGTH + 1);
+        for (int i = 0; i + GRAM_LENGTH <= normalized.length(); i++) {
+            result.add(normalized.substring(i, i + GRAM_LENGTH));
+        }
+        return result;
+    }
+
+    private record FuzzyMatch(long id, int edits, int titleLength) {
+        static final Comparator<FuzzyMatch> RANKING = Comparator.comparingInt(FuzzyMatch::edits)
+                .thenComparingInt(FuzzyMatch::titleLength)
+                .thenComparingLong(FuzzyMatch::id);
+    }
+
+    private record Match(long id, int rank, int titleLength) {
+        static final Comparator<Match> RANKING = Comparator.comparingInt(Match::rank)
+                .thenComparingInt(Match::titleLength)
+                .thenComparingLong(Match::id);
+    }
+}
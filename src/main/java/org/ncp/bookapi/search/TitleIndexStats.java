@@ -0,0 +1,17 @@
+package org.ncp.bookapi.search;
+
+/**
+ * Size figures of the {@link TitleIndex}: {@code terms} are its trigrams, {@code words} the distinct title words
+ * used by fuzzy search; {@code estimatedBytes} is a rough heap estimate. {@code fuzzyWordsVerified} counts the words
+ * fuzzy searches have compared with a query word by edit distance since startup.
+ */
+public record TitleIndexStats(
+        int documents,
+        int terms,
+        int words,
+        long postings,
+        int largestPosting,
+        double averagePosting,
+        long estimatedBytes,
+        long fuzzyWordsVerified) {
+}
@@ -0,0 +1,260 @@
+package org.ncp.bookapi.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The distinct words of the indexed titles, each with the books whose title contains it, plus a trigram
+ * index over the words themselves: the words a few edits away from a query word are found from the
+ * trigrams they must share with it (see {@link #similar}), without comparing the query against every word.
+ *
+ * Not thread-safe; {@link TitleIndex} guards it with its own lock.
+ */
+final class WordIndex {
+
+    private static final PostingList EMPTY = new PostingList();
+
+    private final Map<String, Word> words = new HashMap<>();
+    private final Map<Long, Word> wordsById = new HashMap<>();
+    private final Map<String, PostingList> wordsByGram = new HashMap<>();
+    private long nextWordId;
+
+    void add(long titleId, String normalizedTitle) {
+        for (String text : wordsOf(normalizedTitle)) {
+            words.computeIfAbsent(text, this::newWord).titles().add(titleId);
+        }
+    }
+
+    void remove(long titleId, String normalizedTitle) {
+        for (String text : wordsOf(normalizedTitle)) {
+            Word word = words.get(text);
+            if (word != null && word.titles().remove(titleId) && word.titles().isEmpty()) {
+                words.remove(text);
+                wordsById.remove(word.id());
+                for (String gram : paddedGramsOf(text)) {
+                    PostingList list = wordsByGram.get(gram);
+                    if (list != null && list.remove(word.id()) && list.isEmpty()) {
+                        wordsByGram.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The books of every indexed word starting with a prefix of one or two letters or digits, found through
+     * the padded trigram that only such words have ("  h" or " ha"); nothing for any other prefix.
+     */
+    List<PostingList> titlesWithWordsStartingWith(String prefix) {
+        if (prefix.isEmpty() || prefix.length() >= TitleIndex.GRAM_LENGTH || !wordsOf(prefix).contains(prefix)) {
+            return List.of();
+        }
+        PostingList wordIds = wordsByGram.get(" ".repeat(TitleIndex.GRAM_LENGTH - prefix.length()) + prefix);
+        if (wordIds == null) {
+            return List.of();
+        }
+        List<PostingList> titles = new ArrayList<>(wordIds.size());
+        for (int i = 0; i < wordIds.size(); i++) {
+            titles.add(wordsById.get(wordIds.get(i)).titles());
+        }
+        return titles;
+    }
+
+    /**
+     * The indexed words at most {@code maxEdits} edits away from the query word, with their distance;
+     * every word compared by edit distance is counted in {@code verified}.
+     *
+     * Without swapped letters, one edit changes at most {@code GRAM_LENGTH} of a word's padded trigrams, so a close
+     * enough word shares at least {@code grams - GRAM_LENGTH * maxEdits} of them with the query: two or more for
+     * any word of three letters or more. A swap changes four, so swaps are undone on the query instead: a word
+     * whose distance includes a swap is within {@code maxEdits - 1} edits of one of the swapped queries, and with
+     * a single edit allowed it is that swapped query itself. Candidates of the wrong length are skipped before
+     * the edit distance is computed.
+     */
+    List<Similar> similar(String query, int maxEdits, LongAdder verified) {
+        Set<Long> candidates = new HashSet<>();
+        collectCandidates(query, TitleIndex.GRAM_LENGTH * maxEdits, candidates);
+        for (int i = 0; i + 1 < query.length(); i++) {
+            if (query.charAt(i) == query.charAt(i + 1)) {
+                continue;
+            }
+            String swapped = query.substring(0, i) + query.charAt(i + 1) + query.charAt(i) + query.substring(i + 2);
+            if (maxEdits == 1) {
+                Word word = words.get(swapped);
+                if (word != null) {
+                    candidates.add(word.id());
+                }
+            } else {
+                collectCandidates(swapped, (TitleIndex.GRAM_LENGTH + 1) * (maxEdits - 1), candidates);
+            }
+        }
+        List<Similar> similar = new ArrayList<>();
+        for (long id : candidates) {
+            Word word = wordsById.get(id);
+            if (Math.abs(word.text().length() - query.length()) > maxEdits) {
+                continue;
+            }
+            verified.increment();
+            int edits = boundedDistance(query, word.text(), maxEdits);
+            if (edits <= maxEdits) {
+                similar.add(new Similar(word.titles(), edits));
+            }
+        }
+        return similar;
+    }
+
+    int size() {
+        return words.size();
+    }
+
+    long estimatedBytes() {
+        long bytes = 0;
+        for (Word word : words.values()) {
+            // two map nodes + boxed id + record + word string + title ids
+            bytes += 2 * 32 + 16 + 24 + 40 + word.text().length() + word.titles().estimatedBytes();
+        }
+        for (PostingList list : wordsByGram.values()) {
+            // map node + gram string + word ids
+            bytes += 32 + 48 + list.estimatedBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * The distinct words of a normalized text: runs of letters and digits.
+     */
+    static Set<String> wordsOf(String normalized) {
+        Set<String> result = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                result.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Trigrams of the word padded with two spaces on each side
+     * ("hary" -> "  h", " ha", "har", "ary", "ry ", "y  "), so that every letter is in three of them,
+     * the first and last ones included.
+     */
+    static Set<String> paddedGramsOf(String word) {
+        return new LinkedHashSet<>(TitleIndex.gramsOf("  " + word + "  "));
+    }
+
+    /**
+     * Adds the words sharing at least {@code grams - maxChangedGrams} padded trigrams with the query.
+     * Such a word has at least one of the {@code maxChangedGrams + 1} trigrams with the fewest words,
+     * so only their words are read, and each is then counted in the other lists.
+     */
+    private void collectCandidates(String query, int maxChangedGrams, Set<Long> candidates) {
+        Set<String> grams = paddedGramsOf(query);
+        // only a word repeating a trigram ("aaaaaa") can fall below one
+        int needed = Math.max(1, grams.size() - maxChangedGrams);
+        List<PostingList> postings = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            // a trigram no word has still counts as one of the rarest
+            postings.add(wordsByGram.getOrDefault(gram, EMPTY));
+        }
+        postings.sort(Comparator.comparingInt(PostingList::size));
+        for (int source = 0; source <= grams.size() - needed; source++) {
+            PostingList list = postings.get(source);
+            for (int i = 0; i < list.size(); i++) {
+                long id = list.get(i);
+                if (!candidates.contains(id) && sharedGrams(postings, id, needed) >= needed) {
+                    candidates.add(id);
+                }
+            }
+        }
+    }
+
+    private static int sharedGrams(List<PostingList> postings, long id, int needed) {
+        int shared = 0;
+        for (int i = 0; i < postings.size() && shared < needed; i++) {
+            if (postings.get(i).contains(id)) {
+                shared++;
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Edit distance between two words, counting an insertion, deletion, substitution or swap of two adjacent
+     * letters as one edit ("teh" -> "the"); {@code max + 1} as soon as it is known to exceed {@code max}.
+     * Only the diagonal band of width {@code 2 * max + 1} is computed.
+     */
+    private static int boundedDistance(String word, String text, int max) {
+        int m = word.length();
+        int n = text.length();
+        if (Math.abs(m - n) > max) {
+            return max + 1;
+        }
+        int outside = max + 1;
+        int[] beforePrevious = new int[n + 1];
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j <= max ? j : outside;
+        }
+        for (int i = 1; i <= m; i++) {
+            int low = Math.max(1, i - max);
+            int high = Math.min(n, i + max);
+            current[0] = i <= max ? i : outside;
+            if (low > 1) {
+                current[low - 1] = outside;
+            }
+            int rowMin = current[0];
+            char c = word.charAt(i - 1);
+            for (int j = low; j <= high; j++) {
+                int substitution = previous[j - 1] + (c == text.charAt(j - 1) ? 0 : 1);
+                int distance = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+                if (i > 1 && j > 1 && c == text.charAt(j - 2) && word.charAt(i - 2) == text.charAt(j - 1)) {
+                    distance = Math.min(distance, beforePrevious[j - 2] + 1);
+                }
+                current[j] = Math.min(distance, outside);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (high < n) {
+                current[high + 1] = outside;
+            }
+            if (rowMin > max) {
+                return outside;
+            }
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return previous[n];
+    }
+
+    private Word newWord(String text) {
+        Word word = new Word(nextWordId++, text, new PostingList());
+        wordsById.put(word.id(), word);
+        for (String gram : paddedGramsOf(text)) {
+            wordsByGram.computeIfAbsent(gram, g -> new PostingList()).add(word.id());
+        }
+        return word;
+    }
+
+    private record Word(long id, String text, PostingList titles) {
+    }
+
+    /**
+     * The books containing a word close to the query word, and how many edits away that word is.
+     */
+    record Similar(PostingList titles, int edits) {
+    }
+}
@@ -0,0 +1,43 @@
+package org.ncp.bookapi.services.BookService;
+
+import org.ncp.bookapi.datasource.DatabaseExecutor;
+import org.ncp.bookapi.entities.Book;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterparts of the {@link BookService} reads: each one runs, with its transaction,
+ * on the bounded {@link DatabaseExecutor} and completes the returned future.
+ */
+@Service
+public class AsyncBookService {
+
+    private final BookService bookService;
+    private final DatabaseExecutor databaseExecutor;
+
+    @Autowired
+    public AsyncBookService(BookService bookService, DatabaseExecutor databaseExecutor) {
+        this.bookService = bookService;
+        this.databaseExecutor = databaseExecutor;
+    }
+
+    public CompletableFuture<Optional<Book>> getBookById(Long id) {
+        return databaseExecutor.supply(() -> bookService.getBookById(id));
+    }
+
+    public CompletableFuture<List<Book>> getBooksAfter(long afterId, int limit) {
+        return databaseExecutor.supply(() -> bookService.getBooksAfter(afterId, limit));
+    }
+
+    public CompletableFuture<List<Book>> getAllBooksByAuthor(String author) {
+        return databaseExecutor.supply(() -> bookService.getAllBooksByAuthor(author));
+    }
+
+    public CompletableFuture<List<Book>> getAllBooksByKeywordInTitle(String keyword, int page, int size) {
+        return databaseExecutor.supply(() -> bookService.getAllBooksByKeywordInTitle(keyword, page, size));
+    }
+}
@@ -1,49 +1,499 @@
 package org.ncp.bookapi.services.BookService;
 
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.ncp.bookapi.cache.BookCache;
+import org.ncp.bookapi.cache.BookCacheStats;
+import org.ncp.bookapi.cache.ResponseBodyCache;
+import org.ncp.bookapi.changes.ChangeFeed;
 import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.entities.BookChange;
 import org.ncp.bookapi.exceptions.BookNotFoundException;
+import org.ncp.bookapi.exceptions.BookVersionMismatchException;
+import org.ncp.bookapi.datasource.ReadRouting;
+import org.ncp.bookapi.repositories.AuthorKeyCount;
+import org.ncp.bookapi.repositories.BookBatchLoader;
+import org.ncp.bookapi.repositories.BookBatchWriter;
 import org.ncp.bookapi.repositories.BookRepository;
+import org.ncp.bookapi.search.AuthorCount;
+import org.ncp.bookapi.search.AuthorIndex;
+import org.ncp.bookapi.search.TitleIndex;
+import org.ncp.bookapi.search.TitleIndexStats;
+import org.ncp.bookapi.snapshot.CatalogSnapshot;
+import org.ncp.bookapi.snapshot.CatalogSnapshotHolder;
+import org.ncp.bookapi.snapshot.CatalogSnapshotStats;
+import org.ncp.bookapi.snapshot.CatalogView;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class BookService {
 
     private final BookRepository bookRepository;
+    private final TitleIndex titleIndex;
+    private final AuthorIndex authorIndex;
+    private final BookCache bookCache;
+    private final BookBatchWriter batchWriter;
+    private final BookBatchLoader batchLoader;
+    private final ResponseBodyCache responseBodyCache;
+    private final ChangeFeed changeFeed;
+    private final CatalogSnapshotHolder catalogSnapshot;
+    private final AtomicReference<CatalogVersion> catalogVersion = new AtomicReference<>(CatalogVersion.initial());
+    // ids of the books written while rebuildIndexes streams the table, or null
+    private volatile Set<Long> writtenDuringRebuild;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Autowired
-    public BookService(BookRepository bookRepository) {
+    public BookService(BookRepository bookRepository, TitleIndex titleIndex, AuthorIndex authorIndex,
+                       BookCache bookCache, BookBatchWriter batchWriter, BookBatchLoader batchLoader,
+                       ResponseBodyCache responseBodyCache, ChangeFeed changeFeed,
+                       CatalogSnapshotHolder catalogSnapshot) {
         this.bookRepository = bookRepository;
+        this.titleIndex = titleIndex;
+        this.authorIndex = authorIndex;
+        this.bookCache = bookCache;
+        this.batchWriter = batchWriter;
+        this.batchLoader = batchLoader;
+        this.responseBodyCache = responseBodyCache;
+        this.changeFeed = changeFeed;
+        this.catalogSnapshot = catalogSnapshot;
     }
 
+    /**
+     * Served from the {@link BookCache}; the database is only queried on a miss,
+     * batched with the misses of concurrent lookups by the {@link BookBatchLoader}.
+     */
     public Optional<Book> getBookById(Long id) {
-        return bookRepository.findById(id);
+        return bookCache.get(id, batchLoader::load);
+    }
+
+    /**
+     * The books with these ids, in the order asked, unknown ids and repeats left out.
+     * Cached books are served from the {@link BookCache}; all the others are read with one {@code IN} query.
+     */
+    public List<Book> getBooksByIds(List<Long> ids) {
+        return new ArrayList<>(bookCache.getAll(new LinkedHashSet<>(ids), bookRepository::findAllById).values());
+    }
+
+    /**
+     * Changes after every create and delete made through this service, including bulk ones.
+     */
+    public CatalogVersion getCatalogVersion() {
+        return catalogVersion.get();
     }
 
+    public BookCacheStats getBookCacheStats() {
+        return bookCache.stats();
+    }
+
+    /**
+     * Always creates a new book: any id or version sent by the client is ignored.
+     * The book and its change log entry are committed together.
+     */
+    @Transactional
     public Book createBook(Book book) {
-        return bookRepository.save(book);
+        book.setId(null);
+        book.setVersion(null);
+        Book createdBook = bookRepository.save(book);
+        changeFeed.record(BookChange.created(createdBook));
+        afterCommit(() -> onBookSaved(createdBook));
+        return createdBook;
+    }
+
+    /**
+     * Inserts the books in chunks of the configured batch size, each chunk in its own transaction.
+     * Ids in the input are ignored, every book is created. The input is consumed lazily,
+     * so a streamed request body never has to fit in memory.
+     *
+     * When the input cannot be read past some item, the books before it are still inserted and a
+     * {@link BulkInputException} tells where reading stopped and what was done up to there.
+     */
+    public BulkResult createBooks(Iterator<Book> books) {
+        var result = new BulkResultBuilder();
+        List<Book> chunk = new ArrayList<>(batchWriter.getBatchSize());
+        while (true) {
+            Book book;
+            try {
+                if (!books.hasNext()) {
+                    break;
+                }
+                book = books.next();
+            } catch (RuntimeException ex) {
+                long position = result.offset + chunk.size();
+                if (!chunk.isEmpty()) {
+                    insertChunk(chunk, result);
+                }
+                throw new BulkInputException(position, result.build(), ex);
+            }
+            book.setId(null);
+            book.setVersion(null);
+            chunk.add(book);
+            if (chunk.size() == batchWriter.getBatchSize()) {
+                insertChunk(chunk, result);
+                chunk = new ArrayList<>(batchWriter.getBatchSize());
+            }
+        }
+        if (!chunk.isEmpty()) {
+            insertChunk(chunk, result);
+        }
+        return result.build();
+    }
+
+    /**
+     * Deletes the books in chunks of the configured batch size, one statement and transaction per chunk.
+     * Unknown ids are skipped; {@link BulkResult#succeeded()} counts the books found and deleted.
+     * A chunk that deleted anything makes one new catalog version; one that found nothing, none.
+     */
+    public BulkResult deleteBooks(List<Long> ids) {
+        var result = new BulkResultBuilder();
+        for (int from = 0; from < ids.size(); from += batchWriter.getBatchSize()) {
+            List<Long> chunk = ids.subList(from, Math.min(from + batchWriter.getBatchSize(), ids.size()));
+            try {
+                List<Long> deleted = batchWriter.deleteChunk(chunk);
+                deleted.forEach(this::forgetBook);
+                if (!deleted.isEmpty()) {
+                    catalogVersion.updateAndGet(CatalogVersion::next);
+                }
+                result.succeeded(chunk.size(), deleted.size());
+            } catch (RuntimeException ex) {
+                result.failed(chunk.size(), ex);
+            }
+        }
+        return result.build();
     }
 
+    /**
+     * Reads of the catalog are served from the {@link CatalogSnapshotHolder} once it is built, without a transaction;
+     * otherwise the repository query runs in its own read-only one.
+     */
     public List<Book> getAllBooks() {
-        return bookRepository.findAll();
+        CatalogView snapshot = catalogSnapshot.current();
+        return snapshot != null ? snapshot.all() : bookRepository.findAll();
+    }
+
+    /**
+     * Returns at most {@code limit} books with an id greater than {@code afterId}, ordered by id.
+     * Pass the id of the last book of a page to get the next one.
+     */
+    public List<Book> getBooksAfter(long afterId, int limit) {
+        CatalogView snapshot = catalogSnapshot.current();
+        return snapshot != null
+                ? snapshot.booksAfter(afterId, limit)
+                : bookRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(limit));
+    }
+
+    /**
+     * Hands every book to the consumer in id order while reading from a database cursor.
+     * Each book is detached once consumed so the persistence context stays empty,
+     * which keeps memory flat regardless of the catalog size.
+     */
+    @Transactional(readOnly = true)
+    public void streamAllBooks(Consumer<Book> consumer) {
+        try (Stream<Book> books = bookRepository.streamAllOrderedById()) {
+            books.forEach(book -> {
+                consumer.accept(book);
+                entityManager.detach(book);
+            });
+        }
     }
 
+    /**
+     * Matches the author ignoring case and extra whitespace, through the indexed normalized author key.
+     */
     public List<Book> getAllBooksByAuthor(String author) {
-        return bookRepository.findByAuthor(author);
+        CatalogView snapshot = catalogSnapshot.current();
+        String authorKey = Book.normalizeAuthor(author);
+        return snapshot != null ? snapshot.booksByAuthorKey(authorKey) : bookRepository.findByAuthorKey(authorKey);
+    }
+
+    /**
+     * Typeahead: the authors starting with the prefix that have the most books, answered from memory.
+     */
+    public List<AuthorCount> completeAuthors(String prefix, int limit) {
+        return authorIndex.complete(prefix, limit);
+    }
+
+    /**
+     * Case-insensitive title search answered by the {@link TitleIndex}; only the requested page is loaded,
+     * by primary key, in ranking order.
+     */
+    public List<Book> getAllBooksByKeywordInTitle(String keyword, int page, int size) {
+        return findAllInOrder(titleIndex.search(keyword, page, size));
+    }
+
+    /**
+     * Typo-tolerant title search ("hary poter"), answered by the {@link TitleIndex} like the exact one.
+     */
+    public List<Book> getAllBooksBySimilarTitle(String text, int page, int size) {
+        return findAllInOrder(titleIndex.fuzzySearch(text, page, size));
+    }
+
+    /**
+     * Totals and top authors from the {@link AuthorIndex}, kept up to date by every create and delete.
+     */
+    public CatalogStats getCatalogStats(int topAuthors) {
+        return new CatalogStats(authorIndex.bookCount(), authorIndex.authorCount(), authorIndex.top(topAuthors));
     }
 
-    public List<Book> getAllBooksByKeywordInTitle(String keyword) {
-        return bookRepository.findByTitleContaining(keyword);
+    /**
+     * Compares the author counts with a {@code GROUP BY} on the primary. When they drifted, the author index
+     * is rebuilt on the side from a full read and installed with the writes made meanwhile replayed, like
+     * {@link #rebuildIndexes}. Returns whether the index was repaired; a repair is a new catalog version,
+     * so that cached statistics are not revalidated as unchanged.
+     */
+    @Transactional(readOnly = true)
+    public boolean reconcileAuthorStats() {
+        return ReadRouting.onPrimary(() -> {
+            Map<String, Long> counts = new HashMap<>();
+            for (AuthorKeyCount row : bookRepository.countByAuthorKey()) {
+                counts.put(row.getAuthorKey(), row.getBooks());
+            }
+            if (counts.equals(authorIndex.countsByKey()) && bookRepository.count() == authorIndex.bookCount()) {
+                return false;
+            }
+            AuthorIndex rebuilt = authorIndex.beginRebuild();
+            CatalogSnapshot.Builder snapshot = catalogSnapshot.beginRebuild();
+            try {
+                streamAllBooks(book -> {
+                    rebuilt.add(book.getId(), book.getAuthor());
+                    if (snapshot != null) {
+                        snapshot.add(book);
+                    }
+                });
+            } catch (RuntimeException ex) {
+                authorIndex.abandonRebuild();
+                catalogSnapshot.abandonRebuild();
+                throw ex;
+            }
+            boolean repaired = authorIndex.install(rebuilt);
+            if (snapshot != null) {
+                catalogSnapshot.install(snapshot.build());
+            }
+            if (repaired) {
+                catalogVersion.updateAndGet(CatalogVersion::next);
+            }
+            return repaired;
+        });
     }
 
+    public TitleIndexStats getTitleIndexStats() {
+        return titleIndex.stats();
+    }
+
+    public CatalogSnapshotStats getCatalogSnapshotStats() {
+        return catalogSnapshot.stats();
+    }
+
+    /**
+     * Deletes with a single {@code DELETE ... WHERE id = ?}; the affected-row count tells whether the book existed.
+     */
+    @Transactional
     public void deleteBook(Long id) {
-        if (bookRepository.existsById(id)) {
-            bookRepository.deleteById(id);
-        } else {
+        if (bookRepository.deleteBookById(id) == 0) {
             throw new BookNotFoundException(id);
         }
+        changeFeed.record(BookChange.deleted(id));
+        afterCommit(() -> onBookDeleted(id));
+    }
+
+    /**
+     * Deletes the book only if it is still at {@code expectedVersion}, in one statement and without a prior read.
+     * The existence check runs only when nothing was deleted, to report the right failure.
+     */
+    @Transactional
+    public void deleteBook(Long id, long expectedVersion) {
+        if (bookRepository.deleteBookByIdAndVersion(id, expectedVersion) == 0) {
+            if (bookRepository.existsById(id)) {
+                throw new BookVersionMismatchException(id, expectedVersion);
+            }
+            throw new BookNotFoundException(id);
+        }
+        changeFeed.record(BookChange.deleted(id));
+        afterCommit(() -> onBookDeleted(id));
+    }
+
+    /**
+     * Loads every book into the {@link TitleIndex}, {@link AuthorIndex} and, when enabled, the catalog snapshot,
+     * and the first {@code booksToCache} into the {@link BookCache}, in one pass over the table.
+     * Returns the number of books read.
+     *
+     * The indexes are built on the side and swapped in with the writes made meanwhile replayed, so searches
+     * keep being answered and no concurrent write is lost. Books written meanwhile are dropped from the cache
+     * afterwards, since the pass may have cached them as they were before.
+     */
+    @Transactional(readOnly = true)
+    public long rebuildIndexes(int booksToCache) {
+        TitleIndex titles = titleIndex.beginRebuild();
+        AuthorIndex authors = authorIndex.beginRebuild();
+        CatalogSnapshot.Builder snapshot = catalogSnapshot.beginRebuild();
+        Set<Long> written = ConcurrentHashMap.newKeySet();
+        writtenDuringRebuild = written;
+        long[] count = {0};
+        try {
+            streamAllBooks(book -> {
+                titles.add(book.getId(), book.getTitle());
+                authors.add(book.getId(), book.getAuthor());
+                if (snapshot != null) {
+                    snapshot.add(book);
+                }
+                if (count[0]++ < booksToCache) {
+                    bookCache.put(book);
+                }
+            });
+        } catch (RuntimeException ex) {
+            titleIndex.abandonRebuild();
+            authorIndex.abandonRebuild();
+            catalogSnapshot.abandonRebuild();
+            throw ex;
+        } finally {
+            writtenDuringRebuild = null;
+            written.forEach(bookCache::invalidate);
+        }
+        titleIndex.install(titles);
+        boolean authorsChanged = authorIndex.install(authors);
+        if (snapshot != null) {
+            catalogSnapshot.install(snapshot.build());
+        }
+        if (authorsChanged) {
+            catalogVersion.updateAndGet(CatalogVersion::next);
+        }
+        return count[0];
+    }
+
+    private void insertChunk(List<Book> chunk, BulkResultBuilder result) {
+        try {
+            batchWriter.insertChunk(chunk).forEach(this::rememberBook);
+            // one new catalog version per chunk, not per book
+            catalogVersion.updateAndGet(CatalogVersion::next);
+            result.succeeded(chunk.size(), chunk.size());
+        } catch (RuntimeException ex) {
+            result.failed(chunk.size(), ex);
+        }
+    }
+
+    /**
+     * Caches and indexes must not see a change before it commits, or a concurrent read could cache the old state.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void onBookSaved(Book book) {
+        rememberBook(book);
+        catalogVersion.updateAndGet(CatalogVersion::next);
+    }
+
+    private void onBookDeleted(Long id) {
+        forgetBook(id);
+        catalogVersion.updateAndGet(CatalogVersion::next);
+    }
+
+    /**
+     * Brings caches, indexes and the snapshot up to date with a saved book; the catalog version is left to the caller.
+     */
+    private void rememberBook(Book book) {
+        noteWrittenDuringRebuild(book.getId());
+        // drops a cached miss for this id
+        bookCache.invalidate(book.getId());
+        responseBodyCache.invalidateBook(book.getId());
+        indexBook(book);
+        catalogSnapshot.upsert(book);
+    }
+
+    /**
+     * Drops a deleted book from caches, indexes and the snapshot; the catalog version is left to the caller.
+     */
+    private void forgetBook(Long id) {
+        noteWrittenDuringRebuild(id);
+        bookCache.invalidate(id);
+        responseBodyCache.invalidateBook(id);
+        titleIndex.remove(id);
+        authorIndex.remove(id);
+        catalogSnapshot.remove(id);
+    }
+
+    private void noteWrittenDuringRebuild(Long id) {
+        Set<Long> written = writtenDuringRebuild;
+        if (written != null && id != null) {
+            written.add(id);
+        }
+    }
+
+    private void indexBook(Book book) {
+        titleIndex.add(book.getId(), book.getTitle());
+        authorIndex.add(book.getId(), book.getAuthor());
+    }
+
+    private List<Book> findAllInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        CatalogView snapshot = catalogSnapshot.current();
+        if (snapshot != null) {
+            return snapshot.findAll(ids);
+        }
+        Map<Long, Book> booksById = bookRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        // ids removed from the database behind the index's back are simply skipped
+        return ids.stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private static final class BulkResultBuilder {
+        private final List<BulkResult.Chunk> chunks = new ArrayList<>();
+        private long offset;
+        private long succeeded;
+        private long failed;
+
+        void succeeded(int size, int affected) {
+            chunks.add(new BulkResult.Chunk(chunks.size(), offset, size, affected, null));
+            offset += size;
+            succeeded += affected;
+        }
+
+        void failed(int size, RuntimeException ex) {
+            String error = NestedExceptionUtils.getMostSpecificCause(ex).getMessage();
+            chunks.add(new BulkResult.Chunk(chunks.size(), offset, size, 0, error));
+            offset += size;
+            failed += size;
+        }
+
+        BulkResult build() {
+            return new BulkResult(succeeded, failed, chunks);
+        }
     }
 }
@@ -0,0 +1,28 @@
+package org.ncp.bookapi.services.BookService;
+
+/**
+ * The input of a bulk create could not be read past some item. Everything before that item has been
+ * processed and is described by {@link #getProcessed()}; nothing after it was read.
+ */
+public class BulkInputException extends RuntimeException {
+
+    private final long position;
+    private final BulkResult processed;
+
+    public BulkInputException(long position, BulkResult processed, Throwable cause) {
+        super("Unreadable item at position " + position + ": " + cause.getMessage(), cause);
+        this.position = position;
+        this.processed = processed;
+    }
+
+    /**
+     * Zero-based position of the unreadable item in the input.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public BulkResult getProcessed() {
+        return processed;
+    }
+}
@@ -0,0 +1,18 @@
+package org.ncp.bookapi.services.BookService;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk create or delete: totals plus one entry per transaction chunk.
+ * A failed chunk is rolled back as a whole; the other chunks are unaffected.
+ */
+public record BulkResult(long succeeded, long failed, List<Chunk> chunks) {
+
+    /**
+     * @param offset   position of the chunk's first item in the request
+     * @param affected rows inserted or deleted by the chunk
+     * @param error    why the chunk was rolled back, or {@code null}
+     */
+    public record Chunk(int index, long offset, int size, int affected, String error) {
+    }
+}
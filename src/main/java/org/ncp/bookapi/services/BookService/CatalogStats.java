@@ -0,0 +1,11 @@
+package org.ncp.bookapi.services.BookService;
+
+import org.ncp.bookapi.search.AuthorCount;
+
+import java.util.List;
+
+/**
+ * Catalog totals and the authors with the most books, answered from memory.
+ */
+public record CatalogStats(long books, long authors, List<AuthorCount> topAuthors) {
+}
@@ -0,0 +1,28 @@
+package org.ncp.bookapi.services.BookService;
+
+import java.time.Instant;
+
+/**
+ * Version of the whole catalog as seen by this instance: the generation is bumped by every create and delete,
+ * and starts over at each boot, so the boot epoch is part of the tag.
+ * List and search responses use it as their validator, so a conditional request is answered without a query.
+ */
+public record CatalogVersion(long bootEpoch, long generation, Instant lastModified) {
+
+    static CatalogVersion initial() {
+        Instant now = Instant.now();
+        return new CatalogVersion(now.toEpochMilli(), 0, now);
+    }
+
+    CatalogVersion next() {
+        return new CatalogVersion(bootEpoch, generation + 1, Instant.now());
+    }
+
+    /**
+     * Weak entity tag, as it goes in the {@code ETag} header: it names a catalog state shared by every
+     * representation (JSON, CBOR, compressed or not), and Tomcat only compresses responses with weak tags.
+     */
+    public String entityTag() {
+        return "W/\"" + Long.toString(bootEpoch, 36) + "-" + Long.toString(generation, 36) + "\"";
+    }
+}
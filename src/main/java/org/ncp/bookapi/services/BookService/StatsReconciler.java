@@ -0,0 +1,40 @@
+package org.ncp.bookapi.services.BookService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically checks the in-memory catalog statistics against the database. They only drift
+ * when books are written behind this instance's back (another instance, a script), so a repair is
+ * counted as {@code bookapi.stats.reconcile{outcome=repaired}}.
+ */
+@Component
+public class StatsReconciler {
+
+    private final BookService bookService;
+    private final Counter consistent;
+    private final Counter repaired;
+
+    @Autowired
+    public StatsReconciler(BookService bookService, MeterRegistry meterRegistry) {
+        this.bookService = bookService;
+        this.consistent = reconcileCounter(meterRegistry, "consistent");
+        this.repaired = reconcileCounter(meterRegistry, "repaired");
+    }
+
+    @Scheduled(initialDelayString = "${bookapi.stats.reconcile-interval:PT10M}",
+            fixedDelayString = "${bookapi.stats.reconcile-interval:PT10M}")
+    public void reconcile() {
+        (bookService.reconcileAuthorStats() ? repaired : consistent).increment();
+    }
+
+    private static Counter reconcileCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("bookapi.stats.reconcile")
+                .description("Runs of the catalog statistics check against the database")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,301 @@
+package org.ncp.bookapi.snapshot;
+
+import org.ncp.bookapi.cache.BookSnapshot;
+import org.ncp.bookapi.entities.Book;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, column-oriented copy of the whole catalog, sorted by id.
+ *
+ * Each book is a row number rather than an object: ids, versions and timestamps are primitive arrays,
+ * authors are codes into a dictionary holding every distinct author once, and titles are UTF-8 slices
+ * of one shared byte arena. Books are only materialized when a request asks for them.
+ * Rows of an author are found through a compressed index (row start per author code, then the rows).
+ */
+public final class CatalogSnapshot {
+
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    private static final int NO_AUTHOR = -1;
+
+    private static final CatalogSnapshot EMPTY = new Builder().build();
+
+    private final int size;
+    private final long[] ids;
+    private final long[] versions;
+    private final long[] modifiedSeconds;
+    private final int[] modifiedNanos;
+    private final int[] authorCodes;
+    private final String[] authors;
+    // normalized author -> codes of the spellings that fold to it
+    private final Map<String, int[]> authorCodesByKey;
+    private final int[] rowStartByCode;
+    private final int[] rowsByCode;
+    private final byte[] titleArena;
+    private final int[] titleOffsets;
+    private final BitSet nullTitles;
+
+    private CatalogSnapshot(Builder builder) {
+        size = builder.size;
+        ids = Arrays.copyOf(builder.ids, size);
+        versions = Arrays.copyOf(builder.versions, size);
+        modifiedSeconds = Arrays.copyOf(builder.modifiedSeconds, size);
+        modifiedNanos = Arrays.copyOf(builder.modifiedNanos, size);
+        authorCodes = Arrays.copyOf(builder.authorCodes, size);
+        authors = builder.authors.toArray(new String[0]);
+        titleArena = Arrays.copyOf(builder.titleArena, builder.arenaSize);
+        titleOffsets = Arrays.copyOf(builder.titleOffsets, size + 1);
+        nullTitles = (BitSet) builder.nullTitles.clone();
+
+        Map<String, List<Integer>> codesByKey = new HashMap<>();
+        for (int code = 0; code < authors.length; code++) {
+            codesByKey.computeIfAbsent(Book.normalizeAuthor(authors[code]), key -> new ArrayList<>()).add(code);
+        }
+        authorCodesByKey = new HashMap<>(codesByKey.size() * 2);
+        codesByKey.forEach((key, codes) -> authorCodesByKey.put(key, codes.stream().mapToInt(Integer::intValue).toArray()));
+
+        rowStartByCode = new int[authors.length + 1];
+        for (int row = 0; row < size; row++) {
+            if (authorCodes[row] != NO_AUTHOR) {
+                rowStartByCode[authorCodes[row] + 1]++;
+            }
+        }
+        for (int code = 0; code < authors.length; code++) {
+            rowStartByCode[code + 1] += rowStartByCode[code];
+        }
+        rowsByCode = new int[rowStartByCode[authors.length]];
+        int[] next = Arrays.copyOf(rowStartByCode, authors.length);
+        for (int row = 0; row < size; row++) {
+            if (authorCodes[row] != NO_AUTHOR) {
+                rowsByCode[next[authorCodes[row]]++] = row;
+            }
+        }
+    }
+
+    public static CatalogSnapshot empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int authorCount() {
+        return authors.length;
+    }
+
+    /**
+     * Row of the book with this id, or a negative number when there is none.
+     */
+    public int rowOf(long id) {
+        return Arrays.binarySearch(ids, 0, size, id);
+    }
+
+    /**
+     * First row whose id is greater than the given one; {@link #size()} when there is none.
+     */
+    public int firstRowAfter(long id) {
+        int row = rowOf(id);
+        return row >= 0 ? row + 1 : -row - 1;
+    }
+
+    public long id(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Rows of the books whose author normalizes to the given key, in id order.
+     */
+    public int[] rowsOfAuthorKey(String key) {
+        int[] codes = key == null ? null : authorCodesByKey.get(key);
+        if (codes == null) {
+            return new int[0];
+        }
+        if (codes.length == 1) {
+            return Arrays.copyOfRange(rowsByCode, rowStartByCode[codes[0]], rowStartByCode[codes[0] + 1]);
+        }
+        int count = 0;
+        for (int code : codes) {
+            count += rowStartByCode[code + 1] - rowStartByCode[code];
+        }
+        int[] rows = new int[count];
+        int at = 0;
+        for (int code : codes) {
+            int length = rowStartByCode[code + 1] - rowStartByCode[code];
+            System.arraycopy(rowsByCode, rowStartByCode[code], rows, at, length);
+            at += length;
+        }
+        Arrays.sort(rows);
+        return rows;
+    }
+
+    public String title(int row) {
+        if (nullTitles.get(row)) {
+            return null;
+        }
+        return new String(titleArena, titleOffsets[row], titleOffsets[row + 1] - titleOffsets[row], StandardCharsets.UTF_8);
+    }
+
+    public String author(int row) {
+        return authorCodes[row] == NO_AUTHOR ? null : authors[authorCodes[row]];
+    }
+
+    public BookSnapshot row(int row) {
+        Long version = versions[row] == NO_VALUE ? null : versions[row];
+        Instant lastModified = modifiedSeconds[row] == NO_VALUE
+                ? null
+                : Instant.ofEpochSecond(modifiedSeconds[row], modifiedNanos[row]);
+        return new BookSnapshot(ids[row], title(row), author(row), version, lastModified);
+    }
+
+    /**
+     * A new snapshot with the overlay's books replacing or joining the rows of this one, and its deleted ids left out.
+     */
+    CatalogSnapshot merge(Overlay overlay) {
+        Builder builder = new Builder();
+        Iterator<Overlay.Entry> written = overlay.entries();
+        Overlay.Entry next = written.hasNext() ? written.next() : null;
+        for (int row = 0; row < size; row++) {
+            long id = ids[row];
+            while (next != null && next.id() < id) {
+                addUnlessDeleted(builder, next);
+                next = written.hasNext() ? written.next() : null;
+            }
+            if (next != null && next.id() == id) {
+                addUnlessDeleted(builder, next);
+                next = written.hasNext() ? written.next() : null;
+            } else {
+                builder.add(row(row));
+            }
+        }
+        while (next != null) {
+            addUnlessDeleted(builder, next);
+            next = written.hasNext() ? written.next() : null;
+        }
+        return builder.build();
+    }
+
+    private static void addUnlessDeleted(Builder builder, Overlay.Entry entry) {
+        if (!entry.isDeletion()) {
+            builder.add(entry.book());
+        }
+    }
+
+    /**
+     * Heap used by this snapshot, next to what the same books cost as {@link Book} entities.
+     */
+    public CatalogSnapshotStats stats(int overlayEntries) {
+        long snapshotBytes = MemoryEstimate.array(ids.length, 8) + MemoryEstimate.array(versions.length, 8)
+                + MemoryEstimate.array(modifiedSeconds.length, 8) + MemoryEstimate.array(modifiedNanos.length, 4)
+                + MemoryEstimate.array(authorCodes.length, 4) + MemoryEstimate.array(authors.length, 4)
+                + MemoryEstimate.array(rowStartByCode.length, 4) + MemoryEstimate.array(rowsByCode.length, 4)
+                + MemoryEstimate.array(titleArena.length, 1) + MemoryEstimate.array(titleOffsets.length, 4)
+                + MemoryEstimate.bitSet(nullTitles.size());
+        for (String author : authors) {
+            snapshotBytes += MemoryEstimate.string(author.length());
+        }
+        for (Map.Entry<String, int[]> entry : authorCodesByKey.entrySet()) {
+            snapshotBytes += MemoryEstimate.HASH_MAP_ENTRY + MemoryEstimate.string(entry.getKey().length())
+                    + MemoryEstimate.array(entry.getValue().length, 4);
+        }
+        snapshotBytes += MemoryEstimate.array(authorCodesByKey.size() * 2L, 4);
+
+        long entityBytes = 0;
+        for (int row = 0; row < size; row++) {
+            entityBytes += MemoryEstimate.BOOK_ENTITY;
+            if (!nullTitles.get(row)) {
+                entityBytes += MemoryEstimate.string(titleOffsets[row + 1] - titleOffsets[row]);
+            }
+            if (authorCodes[row] != NO_AUTHOR) {
+                // every loaded entity has its own author string, and its own normalized copy of it
+                entityBytes += 2 * MemoryEstimate.string(authors[authorCodes[row]].length());
+            }
+        }
+        long managedEntityBytes = entityBytes + (long) size * MemoryEstimate.PERSISTENCE_CONTEXT_ENTRY;
+        return new CatalogSnapshotStats(size, authors.length, titleArena.length, overlayEntries,
+                snapshotBytes, entityBytes, managedEntityBytes);
+    }
+
+    /**
+     * Collects books in ascending id order into a {@link CatalogSnapshot}.
+     */
+    public static final class Builder {
+
+        private int size;
+        private long[] ids = new long[1024];
+        private long[] versions = new long[1024];
+        private long[] modifiedSeconds = new long[1024];
+        private int[] modifiedNanos = new int[1024];
+        private int[] authorCodes = new int[1024];
+        private int[] titleOffsets = new int[1025];
+        private byte[] titleArena = new byte[32 * 1024];
+        private int arenaSize;
+        private final BitSet nullTitles = new BitSet();
+        private final List<String> authors = new ArrayList<>();
+        private final Map<String, Integer> codeByAuthor = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(Book book) {
+            return add(book.getId(), book.getTitle(), book.getAuthor(), book.getVersion(), book.getLastModified());
+        }
+
+        public Builder add(BookSnapshot book) {
+            return add(book.id(), book.title(), book.author(), book.version(), book.lastModified());
+        }
+
+        private Builder add(Long id, String title, String author, Long version, Instant lastModified) {
+            if (id == null || (size > 0 && id <= ids[size - 1])) {
+                throw new IllegalArgumentException("Books must be added in ascending id order, got " + id);
+            }
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                versions = Arrays.copyOf(versions, capacity);
+                modifiedSeconds = Arrays.copyOf(modifiedSeconds, capacity);
+                modifiedNanos = Arrays.copyOf(modifiedNanos, capacity);
+                authorCodes = Arrays.copyOf(authorCodes, capacity);
+                titleOffsets = Arrays.copyOf(titleOffsets, capacity + 1);
+            }
+            ids[size] = id;
+            versions[size] = version == null ? NO_VALUE : version;
+            modifiedSeconds[size] = lastModified == null ? NO_VALUE : lastModified.getEpochSecond();
+            modifiedNanos[size] = lastModified == null ? 0 : lastModified.getNano();
+            authorCodes[size] = author == null
+                    ? NO_AUTHOR
+                    : codeByAuthor.computeIfAbsent(author, a -> {
+                        authors.add(a);
+                        return authors.size() - 1;
+                    });
+            if (title == null) {
+                nullTitles.set(size);
+            } else {
+                byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+                if (arenaSize + bytes.length > titleArena.length) {
+                    titleArena = Arrays.copyOf(titleArena, Math.max(titleArena.length * 2, arenaSize + bytes.length));
+                }
+                System.arraycopy(bytes, 0, titleArena, arenaSize, bytes.length);
+                arenaSize += bytes.length;
+            }
+            titleOffsets[++size] = arenaSize;
+            return this;
+        }
+
+        public CatalogSnapshot build() {
+            return new CatalogSnapshot(this);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.ncp.bookapi.snapshot;
+
+import org.ncp.bookapi.cache.BookSnapshot;
+import org.ncp.bookapi.entities.Book;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Publishes the current {@link CatalogView} for read-heavy deployments ({@code bookapi.snapshot.enabled}).
+ *
+ * Readers take the view with one volatile read and never lock. Writers take a {@link ReentrantLock}, so virtual
+ * threads are not pinned, for as long as the O(log n) overlay update and the swap of the view take.
+ * Once the overlay grows past {@link CatalogView#MAX_OVERLAY} entries it is folded into a new snapshot on a
+ * background thread, off the commit path, and the writes made meanwhile are replayed on the folded view.
+ * A full rebuild streaming the table replays the writes made meanwhile the same way, since the stream may or
+ * may not have seen them.
+ */
+@Component
+public class CatalogSnapshotHolder implements DisposableBean {
+
+    private final boolean enabled;
+    private final Executor folder;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile CatalogView view;
+    private List<UnaryOperator<CatalogView>> writesDuringRebuild;
+    // writes made while a fold runs, to replay on the folded view; null when no fold runs
+    private List<UnaryOperator<CatalogView>> writesDuringFold;
+
+    @Autowired
+    public CatalogSnapshotHolder(@Value("${bookapi.snapshot.enabled:false}") boolean enabled) {
+        this(enabled, enabled ? Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "catalog-fold");
+            thread.setDaemon(true);
+            return thread;
+        }) : Runnable::run);
+    }
+
+    /**
+     * Folds overlays on {@code folder}.
+     */
+    public CatalogSnapshotHolder(boolean enabled, Executor folder) {
+        this.enabled = enabled;
+        this.folder = folder;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The catalog to serve reads from, or {@code null} when disabled or not built yet.
+     */
+    public CatalogView current() {
+        return view;
+    }
+
+    /**
+     * Starts a full rebuild: returns the builder to feed every book to in id order, or {@code null} when disabled.
+     * Must be followed by {@link #install} or {@link #abandonRebuild}.
+     */
+    public CatalogSnapshot.Builder beginRebuild() {
+        if (!enabled) {
+            return null;
+        }
+        writeLock.lock();
+        try {
+            writesDuringRebuild = new ArrayList<>();
+        } finally {
+            writeLock.unlock();
+        }
+        return CatalogSnapshot.builder();
+    }
+
+    public void install(CatalogSnapshot snapshot) {
+        writeLock.lock();
+        try {
+            CatalogView rebuilt = new CatalogView(snapshot);
+            if (writesDuringRebuild != null) {
+                for (UnaryOperator<CatalogView> write : writesDuringRebuild) {
+                    rebuilt = write.apply(rebuilt);
+                }
+                writesDuringRebuild = null;
+            }
+            // a fold still running works on the replaced snapshot; its result is dropped
+            writesDuringFold = null;
+            view = rebuilt;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void abandonRebuild() {
+        writeLock.lock();
+        try {
+            writesDuringRebuild = null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void upsert(Book book) {
+        if (enabled && book.getId() != null) {
+            BookSnapshot snapshot = BookSnapshot.from(book);
+            apply(current -> current.withUpsert(snapshot));
+        }
+    }
+
+    public void remove(Long id) {
+        if (enabled && id != null) {
+            apply(current -> current.withDelete(id));
+        }
+    }
+
+    public CatalogSnapshotStats stats() {
+        CatalogView current = view;
+        return current == null ? CatalogSnapshot.empty().stats(0) : current.stats();
+    }
+
+    @Override
+    public void destroy() {
+        if (folder instanceof ExecutorService executor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void apply(UnaryOperator<CatalogView> write) {
+        CatalogView toFold = null;
+        List<UnaryOperator<CatalogView>> foldWrites = null;
+        writeLock.lock();
+        try {
+            if (view != null) {
+                view = write.apply(view);
+            }
+            if (writesDuringRebuild != null) {
+                writesDuringRebuild.add(write);
+            }
+            if (writesDuringFold != null) {
+                writesDuringFold.add(write);
+            } else if (view != null && view.overlaySize() > CatalogView.MAX_OVERLAY) {
+                toFold = view;
+                foldWrites = new ArrayList<>();
+                writesDuringFold = foldWrites;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        if (toFold != null) {
+            startFold(toFold, foldWrites);
+        }
+    }
+
+    private void startFold(CatalogView from, List<UnaryOperator<CatalogView>> writes) {
+        try {
+            folder.execute(() -> fold(from, writes));
+        } catch (RejectedExecutionException ex) {
+            // shutting down: the overlay keeps serving
+            cancelFold(writes);
+        }
+    }
+
+    private void fold(CatalogView from, List<UnaryOperator<CatalogView>> writes) {
+        CatalogView folded;
+        try {
+            folded = from.compact();
+        } catch (RuntimeException ex) {
+            cancelFold(writes);
+            throw ex;
+        }
+        writeLock.lock();
+        try {
+            if (writesDuringFold != writes) {
+                return;
+            }
+            for (UnaryOperator<CatalogView> write : writes) {
+                folded = write.apply(folded);
+            }
+            writesDuringFold = null;
+            view = folded;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void cancelFold(List<UnaryOperator<CatalogView>> writes) {
+        writeLock.lock();
+        try {
+            if (writesDuringFold == writes) {
+                writesDuringFold = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.ncp.bookapi.snapshot;
+
+/**
+ * Size of the {@link CatalogSnapshot} next to the same catalog loaded as entities.
+ * {@code entityBytes} counts detached {@code Book} objects with their strings;
+ * {@code managedEntityBytes} adds what a persistence context keeps for each of them. All byte counts are estimates.
+ */
+public record CatalogSnapshotStats(
+        int books,
+        int authors,
+        int titleBytes,
+        int overlayEntries,
+        long snapshotBytes,
+        long entityBytes,
+        long managedEntityBytes) {
+}
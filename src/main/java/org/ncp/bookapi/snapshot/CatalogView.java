@@ -0,0 +1,176 @@
+package org.ncp.bookapi.snapshot;
+
+import org.ncp.bookapi.cache.BookSnapshot;
+import org.ncp.bookapi.entities.Book;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+
+/**
+ * The catalog as of one point in time: a {@link CatalogSnapshot} plus the writes made since it was built.
+ *
+ * Every write returns a new view sharing the columnar snapshot and most of the persistent {@link Overlay},
+ * so a write costs O(log n) and a reader holding a view is never affected by later writes.
+ * {@link CatalogSnapshotHolder} folds a large overlay into a new snapshot in the background.
+ */
+public final class CatalogView {
+
+    static final int MAX_OVERLAY = 4096;
+
+    private final CatalogSnapshot base;
+    private final Overlay overlay;
+
+    CatalogView(CatalogSnapshot base) {
+        this(base, Overlay.empty());
+    }
+
+    private CatalogView(CatalogSnapshot base, Overlay overlay) {
+        this.base = base;
+        this.overlay = overlay;
+    }
+
+    CatalogView withUpsert(BookSnapshot book) {
+        return new CatalogView(base, overlay.with(new Overlay.Entry(book.id(), book, Book.normalizeAuthor(book.author()))));
+    }
+
+    CatalogView withDelete(long id) {
+        if (base.rowOf(id) < 0 && overlay.get(id) == null) {
+            return this;
+        }
+        return new CatalogView(base, overlay.with(Overlay.Entry.deletion(id)));
+    }
+
+    /**
+     * The same books, with the overlay folded into a new columnar snapshot. O(n): not for the write path.
+     */
+    CatalogView compact() {
+        if (overlay.isEmpty()) {
+            return this;
+        }
+        return new CatalogView(base.merge(overlay));
+    }
+
+    int overlaySize() {
+        return overlay.size();
+    }
+
+    CatalogSnapshotStats stats() {
+        return base.stats(overlaySize());
+    }
+
+    public Optional<Book> find(long id) {
+        Overlay.Entry written = overlay.get(id);
+        if (written != null) {
+            return written.isDeletion() ? Optional.empty() : Optional.of(written.book().toBook());
+        }
+        int row = base.rowOf(id);
+        return row < 0 ? Optional.empty() : Optional.of(base.row(row).toBook());
+    }
+
+    /**
+     * The books with these ids, in the order given; unknown ids are skipped.
+     */
+    public List<Book> findAll(List<Long> ids) {
+        List<Book> books = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            find(id).ifPresent(books::add);
+        }
+        return books;
+    }
+
+    public List<Book> all() {
+        return booksAfter(Long.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * At most {@code limit} books with an id greater than {@code afterId}, in id order.
+     */
+    public List<Book> booksAfter(long afterId, int limit) {
+        List<Book> books = new ArrayList<>(Math.min(limit, base.size() + overlay.size()));
+        int row = base.firstRowAfter(afterId);
+        Iterator<BookSnapshot> extra = upsertsOf(overlay.entriesAfter(afterId), null);
+        BookSnapshot nextExtra = extra.hasNext() ? extra.next() : null;
+        while (books.size() < limit) {
+            while (row < base.size() && isReplaced(base.id(row))) {
+                row++;
+            }
+            boolean baseLeft = row < base.size();
+            if (nextExtra == null && !baseLeft) {
+                break;
+            }
+            if (nextExtra == null || (baseLeft && base.id(row) < nextExtra.id())) {
+                books.add(base.row(row++).toBook());
+            } else {
+                books.add(nextExtra.toBook());
+                nextExtra = extra.hasNext() ? extra.next() : null;
+            }
+        }
+        return books;
+    }
+
+    /**
+     * The books whose author normalizes to the given key, in id order.
+     */
+    public List<Book> booksByAuthorKey(String authorKey) {
+        int[] rows = base.rowsOfAuthorKey(authorKey);
+        List<Book> books = new ArrayList<>(rows.length);
+        Iterator<BookSnapshot> extra = authorKey == null
+                ? Collections.emptyIterator()
+                : upsertsOf(overlay.entries(), authorKey);
+        BookSnapshot nextExtra = extra.hasNext() ? extra.next() : null;
+        int i = 0;
+        while (i < rows.length || nextExtra != null) {
+            if (i < rows.length && isReplaced(base.id(rows[i]))) {
+                i++;
+            } else if (nextExtra == null || (i < rows.length && base.id(rows[i]) < nextExtra.id())) {
+                books.add(base.row(rows[i++]).toBook());
+            } else {
+                books.add(nextExtra.toBook());
+                nextExtra = extra.hasNext() ? extra.next() : null;
+            }
+        }
+        return books;
+    }
+
+    private boolean isReplaced(long id) {
+        return overlay.get(id) != null;
+    }
+
+    /**
+     * The upserted books of the entries, skipping deletions and, given an author key, the other authors.
+     */
+    private static Iterator<BookSnapshot> upsertsOf(Iterator<Overlay.Entry> entries, String authorKey) {
+        return new Iterator<>() {
+            private BookSnapshot next = advance();
+
+            private BookSnapshot advance() {
+                while (entries.hasNext()) {
+                    Overlay.Entry entry = entries.next();
+                    if (!entry.isDeletion() && (authorKey == null || authorKey.equals(entry.authorKey()))) {
+                        return entry.book();
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public BookSnapshot next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                BookSnapshot book = next;
+                next = advance();
+                return book;
+            }
+        };
+    }
+}
@@ -0,0 +1,33 @@
+package org.ncp.bookapi.snapshot;
+
+/**
+ * Rough heap sizes on a 64-bit JVM with compressed pointers: 12-byte object headers, 16-byte array headers,
+ * 4-byte references, everything padded to 8 bytes, and Latin-1 strings.
+ */
+final class MemoryEstimate {
+
+    // Book: header + 6 references, plus its boxed id and version and its Instant
+    static final long BOOK_ENTITY = 40 + 16 + 16 + 24;
+    // what Hibernate keeps per managed entity: EntityEntry, loaded-state array, EntityKey and the map entries holding them
+    static final long PERSISTENCE_CONTEXT_ENTRY = 96 + 40 + 24 + 2 * 32;
+    static final long HASH_MAP_ENTRY = 32;
+
+    private MemoryEstimate() {
+    }
+
+    static long array(long length, int elementBytes) {
+        return align(16 + length * elementBytes);
+    }
+
+    static long string(int length) {
+        return 24 + array(length, 1);
+    }
+
+    static long bitSet(int bits) {
+        return 24 + array((bits + 63) / 64, 8);
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
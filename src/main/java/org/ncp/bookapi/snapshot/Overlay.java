@@ -0,0 +1,151 @@
+package org.ncp.bookapi.snapshot;
+
+import org.ncp.bookapi.cache.BookSnapshot;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The writes a {@link CatalogView} has on top of its snapshot: an immutable map from book id to the book as
+ * written, or to a deletion.
+ *
+ * A treap ordered by id, with each node's priority a hash of its id so that the shape does not depend on the
+ * order of the writes. Adding an entry copies only the path to it, O(log n) nodes, and shares the rest
+ * with the map it was made from, so a write does not copy the overlay.
+ */
+final class Overlay {
+
+    private static final Overlay EMPTY = new Overlay(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private Overlay(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static Overlay empty() {
+        return EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The entry of the id, or {@code null} when the overlay has none.
+     */
+    Entry get(long id) {
+        Node node = root;
+        while (node != null) {
+            long nodeId = node.entry.id();
+            if (id == nodeId) {
+                return node.entry;
+            }
+            node = id < nodeId ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * A new overlay with the entry added, or replacing the one of the same id.
+     */
+    Overlay with(Entry entry) {
+        return new Overlay(insert(root, entry), get(entry.id()) == null ? size + 1 : size);
+    }
+
+    /**
+     * The entries with an id greater than {@code afterId}, in id order.
+     */
+    Iterator<Entry> entriesAfter(long afterId) {
+        Deque<Node> path = new ArrayDeque<>();
+        for (Node node = root; node != null; ) {
+            if (node.entry.id() > afterId) {
+                path.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public Entry next() {
+                if (path.isEmpty()) {
+                    throw new NoSuchElementException();
+                }
+                Node node = path.pop();
+                for (Node next = node.right; next != null; next = next.left) {
+                    path.push(next);
+                }
+                return node.entry;
+            }
+        };
+    }
+
+    Iterator<Entry> entries() {
+        return entriesAfter(Long.MIN_VALUE);
+    }
+
+    private static Node insert(Node node, Entry entry) {
+        if (node == null) {
+            return new Node(entry, priority(entry.id()), null, null);
+        }
+        long id = entry.id();
+        long nodeId = node.entry.id();
+        if (id == nodeId) {
+            return new Node(entry, node.priority, node.left, node.right);
+        }
+        if (id < nodeId) {
+            Node left = insert(node.left, entry);
+            // the new child can only outrank this node if it is the new entry; one rotation restores the order
+            return left.priority > node.priority
+                    ? new Node(left.entry, left.priority, left.left, new Node(node.entry, node.priority, left.right, node.right))
+                    : new Node(node.entry, node.priority, left, node.right);
+        }
+        Node right = insert(node.right, entry);
+        return right.priority > node.priority
+                ? new Node(right.entry, right.priority, new Node(node.entry, node.priority, node.left, right.left), right.right)
+                : new Node(node.entry, node.priority, node.left, right);
+    }
+
+    private static long priority(long id) {
+        // MurmurHash3's finalizer: neighbouring ids get unrelated priorities
+        long h = id;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private record Node(Entry entry, long priority, Node left, Node right) {
+    }
+
+    /**
+     * A book as written, with its normalized author so that author lookups do not normalize on each read;
+     * {@code book} is {@code null} for a deletion.
+     */
+    record Entry(long id, BookSnapshot book, String authorKey) {
+
+        static Entry deletion(long id) {
+            return new Entry(id, null, null);
+        }
+
+        boolean isDeletion() {
+            return book == null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package org.ncp.bookapi.startup;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.ncp.bookapi.datasource.ReadRouting;
+import org.ncp.bookapi.services.BookService.BookService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.support.ServletRequestHandledEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the in-memory indexes and the book cache once the application has started, and gates readiness on it.
+ *
+ * Tomcat already accepts connections while this runs, so the {@code warmup} health indicator stays
+ * OUT_OF_SERVICE until it is done; it is part of the readiness group, which load balancers should probe.
+ * Startup is reported as gauges of JVM uptime: when warm-up finished and when the next request was served.
+ */
+@Component("warmup")
+public class Warmup implements HealthIndicator {
+
+    private final BookService bookService;
+    private final int booksToCache;
+
+    private volatile boolean warm;
+    private volatile long booksLoaded;
+    private volatile double warmupSeconds = Double.NaN;
+    private volatile double readySeconds = Double.NaN;
+    private volatile double firstRequestSeconds = Double.NaN;
+
+    @Autowired
+    public Warmup(BookService bookService, MeterRegistry meterRegistry,
+                  @Value("${bookapi.warmup.cached-books:10000}") int booksToCache) {
+        this.bookService = bookService;
+        this.booksToCache = booksToCache;
+        Gauge.builder("bookapi.startup.warmup", this, w -> w.warmupSeconds)
+                .description("Time spent loading indexes and caches after startup")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("bookapi.startup.ready", this, w -> w.readySeconds)
+                .description("JVM uptime when the instance became ready for traffic")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("bookapi.startup.first.request", this, w -> w.firstRequestSeconds)
+                .description("JVM uptime when the first request after warm-up was served")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long start = System.nanoTime();
+        // indexes and cache are kept up to date from here on, so they must start from the primary's state
+        booksLoaded = ReadRouting.onPrimary(() -> bookService.rebuildIndexes(booksToCache));
+        warmupSeconds = (System.nanoTime() - start) / 1e9;
+        readySeconds = uptimeSeconds();
+        warm = true;
+    }
+
+    @EventListener
+    public void onRequestHandled(ServletRequestHandledEvent event) {
+        if (Double.isNaN(firstRequestSeconds) && warm) {
+            firstRequestSeconds = uptimeSeconds();
+        }
+    }
+
+    @Override
+    public Health health() {
+        if (!warm) {
+            return Health.outOfService().build();
+        }
+        return Health.up()
+                .withDetail("books", booksLoaded)
+                .withDetail("warmupSeconds", warmupSeconds)
+                .build();
+    }
+
+    private static double uptimeSeconds() {
+        return ManagementFactory.getRuntimeMXBean().getUptime() / (double) TimeUnit.SECONDS.toMillis(1);
+    }
+}
@@ -0,0 +1,28 @@
+-- Catalog schema for the file-db profile. Keep in step with the Book and BookChange entities.
+
+create sequence book_seq start with 1 increment by 100;
+create sequence book_change_seq start with 1 increment by 100;
+
+create table book (
+    id bigint not null primary key,
+    title varchar(255),
+    author varchar(255),
+    author_key varchar(255),
+    version bigint,
+    last_modified timestamp(6) with time zone
+);
+
+-- by-author lookups (normalized and exact) and title lookups
+create index idx_book_author_key on book (author_key);
+create index idx_book_author on book (author);
+create index idx_book_title on book (title);
+
+create table book_change (
+    seq bigint not null primary key,
+    type varchar(16) not null,
+    book_id bigint not null,
+    title varchar(255),
+    author varchar(255),
+    book_version bigint,
+    changed_at timestamp(6) with time zone not null
+);
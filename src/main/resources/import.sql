@@ -0,0 +1,3 @@
+-- Run by Hibernate once it has created the in-memory schema, for what it cannot derive from the entities.
+-- The ChangeFeed numbers changes from this sequence itself; the file-db profile creates it in db/migration.
+create sequence if not exists book_change_seq start with 1 increment by 100;
@@ -0,0 +1,144 @@
+package org.ncp.book;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.AsyncBookController;
+import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.exceptions.GlobalExceptionHandler;
+import org.ncp.bookapi.services.BookService.AsyncBookService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.LongStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class AsyncBookControllerTest {
+
+    AsyncBookService mockService = mock(AsyncBookService.class);
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    AsyncBookController controller = new AsyncBookController(mockService, objectMapper, Runnable::run,
+            1, Duration.ofMinutes(5));
+    MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller)
+            .setControllerAdvice(new GlobalExceptionHandler())
+            .build();
+
+    @Test
+    void getAllBooksCompletesAsynchronously() throws Exception {
+        when(mockService.getBooksAfter(0L, 1)).thenReturn(CompletableFuture.completedFuture(List.of(book(7L))));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/async/books").param("limit", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(7))
+                .andExpect(header().string("Link", containsString("after=7")));
+    }
+
+    @Test
+    void unknownBooksAreNotFound() throws Exception {
+        when(mockService.getBookById(9L)).thenReturn(CompletableFuture.completedFuture(Optional.empty()));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/async/books/9")).andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void aSaturatedDatabasePoolAnswers503() throws Exception {
+        when(mockService.getAllBooksByAuthor("Author")).thenReturn(
+                CompletableFuture.failedFuture(new RejectedExecutionException()));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/async/books/by-author").param("author", "Author")).andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+    }
+
+    @Test
+    void streamReadsTheNextPageOnlyAfterWritingTheLastOne() throws Exception {
+        List<Book> fullPage = LongStream.rangeClosed(1, 500).mapToObj(AsyncBookControllerTest::book).toList();
+        CompletableFuture<List<Book>> firstPage = new CompletableFuture<>();
+        when(mockService.getBooksAfter(0L, 500)).thenReturn(firstPage);
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/async/books").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        List<Integer> linesWrittenBeforeTheSecondRead = new ArrayList<>();
+        when(mockService.getBooksAfter(500L, 500)).thenAnswer(invocation -> {
+            linesWrittenBeforeTheSecondRead.add(ids(mvcResult).size());
+            return CompletableFuture.completedFuture(List.of(book(501L)));
+        });
+
+        verify(mockService, never()).getBooksAfter(eq(500L), anyInt());
+        firstPage.complete(fullPage);
+        mockMvc.perform(asyncDispatch(mvcResult)).andExpect(status().isOk());
+
+        assertEquals(List.of(500), linesWrittenBeforeTheSecondRead);
+        assertEquals(LongStream.rangeClosed(1, 501).boxed().toList(), ids(mvcResult));
+    }
+
+    @Test
+    void streamsBeyondTheLimitAnswer503UntilOneEnds() throws Exception {
+        CompletableFuture<List<Book>> firstPage = new CompletableFuture<>();
+        when(mockService.getBooksAfter(0L, 500)).thenReturn(firstPage);
+
+        MvcResult running = mockMvc.perform(get("/api/async/books").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(get("/api/async/books").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+
+        firstPage.complete(List.of(book(1L)));
+        mockMvc.perform(asyncDispatch(running)).andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/async/books").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    void streamIsCutOffAfterTheConfiguredTimeout() {
+        when(mockService.getBooksAfter(0L, 500)).thenReturn(new CompletableFuture<>());
+
+        ResponseEntity<ResponseBodyEmitter> response = controller.streamAllBooks();
+
+        assertEquals(Duration.ofMinutes(5).toMillis(), response.getBody().getTimeout());
+    }
+
+    private List<Long> ids(MvcResult mvcResult) throws Exception {
+        String content = mvcResult.getResponse().getContentAsString();
+        List<Long> ids = new ArrayList<>();
+        for (String line : content.isEmpty() ? new String[0] : content.split("\n")) {
+            ids.add(objectMapper.readTree(line).get("id").asLong());
+        }
+        return ids;
+    }
+
+    private static Book book(long id) {
+        Book book = new Book("Title " + id, "Author");
+        book.setId(id);
+        return book;
+    }
+}
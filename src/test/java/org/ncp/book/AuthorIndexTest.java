@@ -0,0 +1,110 @@
+package org.ncp.book;
+
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.search.AuthorCount;
+import org.ncp.bookapi.search.AuthorIndex;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthorIndexTest {
+
+    private final AuthorIndex index = new AuthorIndex();
+
+    @Test
+    void completeReturnsTheAuthorsWithTheMostBooksFirst() {
+        index.add(1L, "Terry Pratchett");
+        index.add(2L, "Terry Pratchett");
+        index.add(3L, "Terry Brooks");
+        index.add(4L, "Tolkien");
+        index.add(5L, "Terry Goodkind");
+        index.add(6L, "Terry Goodkind");
+        index.add(7L, "Terry Goodkind");
+
+        assertEquals(List.of(
+                new AuthorCount("Terry Goodkind", 3),
+                new AuthorCount("Terry Pratchett", 2)
+        ), index.complete("terry", 2));
+    }
+
+    @Test
+    void completeIgnoresCaseAndWhitespace() {
+        index.add(1L, "Ursula K. Le Guin");
+        index.add(2L, "  ursula k.   le guin");
+
+        assertEquals(List.of(new AuthorCount("Ursula K. Le Guin", 2)), index.complete(" URSULA K. LE", 5));
+    }
+
+    @Test
+    void removingTheLastBookDropsTheAuthor() {
+        index.add(1L, "Dan Simmons");
+        index.remove(1L);
+
+        assertTrue(index.complete("dan", 5).isEmpty());
+    }
+
+    @Test
+    void reindexingABookMovesItToItsNewAuthor() {
+        index.add(1L, "Iain Banks");
+        index.add(1L, "Iain M. Banks");
+
+        assertEquals(List.of(new AuthorCount("Iain M. Banks", 1)), index.complete("iain", 5));
+    }
+
+    @Test
+    void topReturnsTheAuthorsWithTheMostBooksAndTotalsCountEveryBook() {
+        index.add(1L, "Terry Pratchett");
+        index.add(2L, "Terry Pratchett");
+        index.add(3L, "Tolkien");
+        index.add(4L, "Ursula K. Le Guin");
+        index.add(5L, "Ursula K. Le Guin");
+        index.add(6L, "Ursula K. Le Guin");
+        index.add(7L, null);
+        index.remove(6L);
+
+        assertEquals(List.of(
+                new AuthorCount("Terry Pratchett", 2),
+                new AuthorCount("Ursula K. Le Guin", 2)
+        ), index.top(2));
+        assertEquals(6, index.bookCount());
+        assertEquals(3, index.authorCount());
+    }
+
+    @Test
+    void installTakesOverTheRebuiltCounts() {
+        index.add(1L, "Dan Simmons");
+        index.add(2L, "Iain Banks");
+        AuthorIndex rebuilt = new AuthorIndex();
+        rebuilt.add(2L, "Iain Banks");
+        rebuilt.add(3L, "Iain Banks");
+
+        assertTrue(index.install(rebuilt));
+
+        assertEquals(List.of(new AuthorCount("Iain Banks", 2)), index.top(5));
+        assertEquals(2, index.bookCount());
+        index.remove(3L);
+        assertEquals(List.of(new AuthorCount("Iain Banks", 1)), index.top(5));
+    }
+
+    @Test
+    void writesDuringARebuildAreReplayedOnTheRebuiltCounts() {
+        index.add(1L, "Dan Simmons");
+        // drifted: the database no longer has this one
+        index.add(5L, "Nobody");
+        AuthorIndex rebuilt = index.beginRebuild();
+        rebuilt.add(1L, "Dan Simmons");
+        rebuilt.add(2L, "Iain Banks");
+        index.add(3L, "Iain Banks");
+        index.remove(2L);
+
+        assertTrue(index.install(rebuilt));
+
+        assertEquals(List.of(new AuthorCount("Dan Simmons", 1), new AuthorCount("Iain Banks", 1)), index.top(5));
+        assertEquals(2, index.bookCount());
+        AuthorIndex unchanged = index.beginRebuild();
+        unchanged.add(1L, "Dan Simmons");
+        unchanged.add(3L, "Iain Banks");
+        assertFalse(index.install(unchanged));
+    }
+}
@@ -0,0 +1,146 @@
+package org.ncp.book;
+
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.repositories.BookBatchLoader;
+import org.ncp.bookapi.repositories.BookRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class BookBatchLoaderTest {
+
+    private final BookRepository repository = mock(BookRepository.class);
+
+    private final CountDownLatch slowLookupReleased = new CountDownLatch(1);
+
+    @Test
+    void aLoneLookupIsReadRightAway() {
+        when(repository.findById(1L)).thenReturn(Optional.of(book(1L)));
+        BookBatchLoader loader = new BookBatchLoader(repository, Duration.ofMinutes(1), 4);
+
+        // would take a minute if the lookup waited for the window to close
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertTrue(loader.load(1L).isPresent()));
+        verify(repository, never()).findAllById(any());
+    }
+
+    @Test
+    void concurrentLookupsAreReadWithOneQuery() throws Exception {
+        when(repository.findAllById(any())).thenReturn(List.of(book(1L), book(2L), book(3L)));
+        BookBatchLoader loader = new BookBatchLoader(repository, Duration.ofMillis(500), 4);
+        ExecutorService slow = startSlowLookup(loader);
+        try {
+            List<Optional<Book>> results = loadConcurrently(loader, 1L, 2L, 3L, 4L);
+
+            assertEquals(List.of(Optional.of(1L), Optional.of(2L), Optional.of(3L), Optional.empty()),
+                    results.stream().map(book -> book.map(Book::getId)).toList());
+            // the batch filled up, so the query ran without waiting for the window to close
+            verify(repository, times(1)).findAllById(Set.of(1L, 2L, 3L, 4L));
+        } finally {
+            slowLookupReleased.countDown();
+            slow.shutdown();
+        }
+    }
+
+    @Test
+    void failuresReachEveryLookupOfTheBatch() throws Exception {
+        when(repository.findAllById(any())).thenThrow(new IllegalStateException("database down"));
+        BookBatchLoader loader = new BookBatchLoader(repository, Duration.ofMillis(500), 2);
+        ExecutorService slow = startSlowLookup(loader);
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = threads.submit(() -> loader.load(1L));
+            Future<?> second = threads.submit(() -> loader.load(2L));
+            for (Future<?> lookup : List.of(first, second)) {
+                Exception ex = assertThrows(Exception.class, lookup::get);
+                assertInstanceOf(IllegalStateException.class, ex.getCause());
+            }
+        } finally {
+            threads.shutdownNow();
+            slowLookupReleased.countDown();
+            slow.shutdown();
+        }
+    }
+
+    @Test
+    void anErrorOfTheLeaderStillReachesTheOtherLookups() throws Exception {
+        when(repository.findAllById(any())).thenThrow(new StackOverflowError());
+        BookBatchLoader loader = new BookBatchLoader(repository, Duration.ofMillis(500), 2);
+        ExecutorService slow = startSlowLookup(loader);
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = threads.submit(() -> loader.load(1L));
+            Future<?> second = threads.submit(() -> loader.load(2L));
+            for (Future<?> lookup : List.of(first, second)) {
+                Exception ex = assertThrows(Exception.class, () -> lookup.get(10, TimeUnit.SECONDS));
+                assertInstanceOf(StackOverflowError.class, ex.getCause());
+            }
+        } finally {
+            threads.shutdownNow();
+            slowLookupReleased.countDown();
+            slow.shutdown();
+        }
+    }
+
+    @Test
+    void aZeroWindowLoadsEachBookOnItsOwn() {
+        when(repository.findById(1L)).thenReturn(Optional.of(book(1L)));
+        BookBatchLoader loader = new BookBatchLoader(repository, Duration.ZERO, 4);
+
+        assertTrue(loader.load(1L).isPresent());
+        verify(repository, never()).findAllById(any());
+    }
+
+    /**
+     * Starts a lone lookup of id 0 that stays in progress until the test releases it,
+     * so that the lookups made meanwhile are batched.
+     */
+    private ExecutorService startSlowLookup(BookBatchLoader loader) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        when(repository.findById(0L)).thenAnswer(invocation -> {
+            started.countDown();
+            slowLookupReleased.await();
+            return Optional.empty();
+        });
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        thread.submit(() -> loader.load(0L));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return thread;
+    }
+
+    private static List<Optional<Book>> loadConcurrently(BookBatchLoader loader, Long... ids) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(ids.length);
+        try {
+            List<Future<Optional<Book>>> lookups = new ArrayList<>();
+            for (Long id : ids) {
+                lookups.add(threads.submit(() -> loader.load(id)));
+            }
+            List<Optional<Book>> results = new ArrayList<>();
+            for (Future<Optional<Book>> lookup : lookups) {
+                results.add(lookup.get());
+            }
+            return results;
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static Book book(Long id) {
+        Book book = new Book("Title " + id, "Author");
+        book.setId(id);
+        return book;
+    }
+}
@@ -4,8 +4,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.ncp.bookapi.Main;
 import org.ncp.bookapi.auth.AuthRequest;
+import org.ncp.bookapi.auth.RefreshRequest;
+import org.ncp.bookapi.auth.TokenPair;
 import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.entities.BookChange;
 import org.ncp.bookapi.repositories.BookRepository;
+import org.ncp.bookapi.search.AuthorCount;
+import org.ncp.bookapi.services.BookService.BookService;
+import org.ncp.bookapi.services.BookService.CatalogStats;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
@@ -15,6 +21,9 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 
 import static org.assertj.core.api.Assertions.assertThat;
 @ContextConfiguration(classes = Main.class)
@@ -27,6 +36,15 @@ public class BookControllerIntegrationTest {
     @Autowired
     private BookRepository bookRepository;
 
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private InMemoryUserDetailsManager userDetailsManager;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     @BeforeEach
     public void setup() {
         bookRepository.deleteAllInBatch();
@@ -123,6 +141,130 @@ public class BookControllerIntegrationTest {
     }
 
 
+    @Test
+    public void shouldPageThroughBooksUsingTheIdCursor() {
+        var book1 = bookRepository.save(createBook("Title One", "Author A"));
+        var book2 = bookRepository.save(createBook("Title Two", "Author B"));
+        var book3 = bookRepository.save(createBook("Title Three", "Author C"));
+
+        ResponseEntity<Book[]> firstPage = testRestTemplate.getForEntity("/api/books?limit=2", Book[].class);
+
+        assertThat(firstPage.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(firstPage.getBody()).extracting(Book::getId).containsExactly(book1.getId(), book2.getId());
+        assertThat(firstPage.getHeaders().getFirst(HttpHeaders.LINK))
+                .contains("after=" + book2.getId())
+                .contains("rel=\"next\"");
+
+        ResponseEntity<Book[]> secondPage = testRestTemplate.getForEntity(
+                "/api/books?after={after}&limit=2", Book[].class, book2.getId());
+
+        assertThat(secondPage.getBody()).extracting(Book::getId).containsExactly(book3.getId());
+        assertThat(secondPage.getHeaders().containsKey(HttpHeaders.LINK)).isFalse();
+    }
+
+    @Test
+    public void shouldListCreatedAndDeletedBooksInTheChangeFeed() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(authenticateToGetToken());
+
+        Book created = testRestTemplate.exchange("/api/books", HttpMethod.POST,
+                new HttpEntity<>(createBook("Dune", "Frank Herbert"), headers), Book.class).getBody();
+        assertThat(created).isNotNull();
+        testRestTemplate.exchange("/api/books/{id}", HttpMethod.DELETE, new HttpEntity<>(headers), Void.class,
+                created.getId());
+
+        ResponseEntity<BookChange[]> response = testRestTemplate.getForEntity("/api/books/changes?since=0",
+                BookChange[].class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody())
+                .filteredOn(change -> created.getId().equals(change.getBookId()))
+                .extracting(BookChange::getType)
+                .containsExactly(BookChange.Type.CREATED, BookChange.Type.DELETED);
+    }
+
+    @Test
+    public void shouldRejectTheRefreshOfAUserDeletedSince() {
+        userDetailsManager.createUser(User.withUsername("leaving")
+                .password(passwordEncoder.encode("secret"))
+                .roles("USER")
+                .build());
+        var authRequest = new AuthRequest();
+        authRequest.setUsername("leaving");
+        authRequest.setPassword("secret");
+        TokenPair tokens = testRestTemplate.postForEntity("/api/auth/token", authRequest, TokenPair.class).getBody();
+        assertThat(tokens).isNotNull();
+        userDetailsManager.deleteUser("leaving");
+
+        var refreshRequest = new RefreshRequest();
+        refreshRequest.setRefreshToken(tokens.refreshToken());
+        assertThat(testRestTemplate.postForEntity("/api/auth/refresh", refreshRequest, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void shouldRefreshTokensAndRejectThemAfterLogout() {
+        var authRequest = new AuthRequest();
+        authRequest.setUsername("testuser");
+        authRequest.setPassword("testpass");
+        TokenPair tokens = testRestTemplate.postForEntity("/api/auth/token", authRequest, TokenPair.class).getBody();
+        assertThat(tokens).isNotNull();
+
+        var refreshRequest = new RefreshRequest();
+        refreshRequest.setRefreshToken(tokens.refreshToken());
+        ResponseEntity<TokenPair> refreshed = testRestTemplate.postForEntity("/api/auth/refresh", refreshRequest, TokenPair.class);
+        assertThat(refreshed.getStatusCode()).isEqualTo(HttpStatus.OK);
+        // refresh tokens are single use
+        assertThat(testRestTemplate.postForEntity("/api/auth/refresh", refreshRequest, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(refreshed.getBody().accessToken());
+        assertThat(testRestTemplate.exchange("/api/books", HttpMethod.POST,
+                new HttpEntity<>(createBook("Dune", "Frank Herbert"), headers), Book.class).getStatusCode())
+                .isEqualTo(HttpStatus.CREATED);
+
+        testRestTemplate.exchange("/api/auth/logout", HttpMethod.POST, new HttpEntity<>(headers), Void.class);
+
+        assertThat(testRestTemplate.exchange("/api/books", HttpMethod.POST,
+                new HttpEntity<>(createBook("Emma", "Jane Austen"), headers), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void shouldServeOpenRoutesAndAnswer401ToAnInvalidToken() {
+        var authRequest = new AuthRequest();
+        authRequest.setUsername("testuser");
+        authRequest.setPassword("testpass");
+        TokenPair tokens = testRestTemplate.postForEntity("/api/auth/token", authRequest, TokenPair.class).getBody();
+        assertThat(tokens).isNotNull();
+        String token = tokens.accessToken();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(token.substring(0, token.length() - 2) + "xx");
+
+        assertThat(testRestTemplate.exchange("/api/books", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+        assertThat(testRestTemplate.exchange("/api/books", HttpMethod.POST,
+                new HttpEntity<>(createBook("Emma", "Jane Austen"), headers), String.class).getStatusCode())
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void shouldReconcileStatisticsWithBooksWrittenBehindTheService() {
+        bookRepository.save(createBook("Mort", "Terry Pratchett"));
+        bookRepository.save(createBook("Sourcery", "Terry Pratchett"));
+        bookRepository.save(createBook("Dune", "Frank Herbert"));
+
+        assertThat(bookService.reconcileAuthorStats()).isTrue();
+        assertThat(bookService.reconcileAuthorStats()).isFalse();
+
+        ResponseEntity<CatalogStats> response = testRestTemplate.getForEntity("/api/books/stats?top=1", CatalogStats.class);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().books()).isEqualTo(3);
+        assertThat(response.getBody().topAuthors()).containsExactly(new AuthorCount("Terry Pratchett", 2));
+    }
+
     private static Book createBook(String title, String author) {
         return new Book(title, author);
     }
@@ -1,37 +1,62 @@
 package org.ncp.book;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import org.mockito.Mockito;
 import org.ncp.bookapi.BookController;
+import org.ncp.bookapi.cache.ResponseBodyCache;
 import org.ncp.bookapi.entities.Book;
 import org.ncp.bookapi.exceptions.BookNotFoundException;
+import org.ncp.bookapi.exceptions.BookVersionMismatchException;
 import org.ncp.bookapi.services.BookService.BookService;
+import org.ncp.bookapi.services.BookService.BulkInputException;
+import org.ncp.bookapi.services.BookService.BulkResult;
+import org.ncp.bookapi.services.BookService.CatalogVersion;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.ncp.bookapi.services.BookService.BookService;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 public class BookControllerTest {
 
     BookService mockService = mock(BookService.class);
-    BookController controller = new BookController(mockService);
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    ResponseBodyCache responseBodyCache = new ResponseBodyCache(1_000_000, Duration.ofMinutes(10), 0);
+    BookController controller = new BookController(mockService, objectMapper, responseBodyCache);
+    CatalogVersion catalogVersion = new CatalogVersion(1_700_000_000_000L, 42, Instant.parse("2024-05-01T12:00:00Z"));
+
+    @BeforeEach
+    void stubCatalogVersion() {
+        when(mockService.getCatalogVersion()).thenReturn(catalogVersion);
+    }
 
     @Test
     void getAllBooksShouldReturnAListOfBooksOnExecute() throws Exception{
-        when(mockService.getAllBooks()).thenReturn(List.of(
+        when(mockService.getBooksAfter(0L, 100)).thenReturn(List.of(
                 new Book("Title One", "Author A"),
                 new Book("Title Two", "Author B")
         ));
@@ -50,6 +75,75 @@ public class BookControllerTest {
                 .andReturn();
     }
 
+    @Test
+    void getBooksByIdsAnswersTheBatchInOneRequest() throws Exception {
+        Book book = new Book("Title Two", "Author B");
+        book.setId(2L);
+        when(mockService.getBooksByIds(List.of(2L, 7L))).thenReturn(List.of(book));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mockMvc.perform(get("/api/books").param("ids", "2,7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+        mockMvc.perform(post("/api/books/lookup").contentType(MediaType.APPLICATION_JSON).content("[2,7]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].title").value("Title Two"));
+        verify(mockService, never()).getBooksAfter(anyLong(), anyInt());
+    }
+
+    @Test
+    void getAllBooksIsEncodedAsCborWhenRequested() throws Exception {
+        when(mockService.getBooksAfter(0L, 100)).thenReturn(List.of(new Book("Title One", "Author A")));
+
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        byte[] body = mockMvc.perform(get("/api/books").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", MediaType.APPLICATION_CBOR_VALUE))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        Book[] books = new CBORMapper().findAndRegisterModules().readValue(body, Book[].class);
+        assertEquals("Title One", books[0].getTitle());
+        assertEquals("Author A", books[0].getAuthor());
+    }
+
+    @Test
+    void getAllBooksStreamsNdjsonWhenRequested() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            consumer.accept(new Book("Title One", "Author A"));
+            consumer.accept(new Book("Title Two", "Author B"));
+            return null;
+        }).when(mockService).streamAllBooks(any());
+
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        MvcResult mvcResult = mockMvc.perform(
+                        get("/api/books")
+                                .accept(MediaType.APPLICATION_NDJSON)
+                )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"title\":\"Title One\""));
+        assertTrue(lines[1].contains("\"title\":\"Title Two\""));
+    }
+
     @Test
     void getBookByIdReturnTheBookIfItMatchesTeId() throws Exception{
         when(mockService.getBookById(1L)).thenReturn(
@@ -70,6 +164,123 @@ public class BookControllerTest {
                 .andReturn();
     }
 
+    @Test
+    void getBookByIdAnswersNotModifiedForTheCurrentVersion() throws Exception {
+        Book book = new Book("Title One", "Author A");
+        book.setId(1L);
+        book.setVersion(3L);
+        book.setLastModified(Instant.parse("2024-05-01T12:00:00Z"));
+        when(mockService.getBookById(1L)).thenReturn(Optional.of(book));
+
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        mockMvc.perform(get("/api/books/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""))
+                .andExpect(header().string("Last-Modified", "Wed, 01 May 2024 12:00:00 GMT"));
+
+        mockMvc.perform(get("/api/books/1").header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/api/books/1").header("If-None-Match", "\"2\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void listsAnswerNotModifiedWithoutQueryingWhenTheCatalogIsUnchanged() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        mockMvc.perform(get("/api/books").header("If-None-Match", catalogVersion.entityTag()))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/books/search-title").param("keyword", "title")
+                        .header("If-Modified-Since", "Wed, 01 May 2024 12:00:00 GMT"))
+                .andExpect(status().isNotModified());
+
+        verify(mockService, never()).getBooksAfter(anyLong(), anyInt());
+        verify(mockService, never()).getAllBooksByKeywordInTitle(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void getBookByIdServesGzippedJsonFromTheResponseCache() throws Exception {
+        Book book = new Book("Title One", "Author A");
+        book.setId(1L);
+        book.setVersion(0L);
+        when(mockService.getBookById(1L)).thenReturn(Optional.of(book));
+
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        byte[] gzipped = mockMvc.perform(get("/api/books/1").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("ETag", "\"0-gzip\""))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+        mockMvc.perform(get("/api/books/1").header("Accept-Encoding", "gzip;q=0"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andExpect(jsonPath("$.title").value("Title One"));
+        mockMvc.perform(get("/api/books/1").header("Accept-Encoding", "gzip").header("If-None-Match", "\"0-gzip\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/books/1").header("If-None-Match", "\"0-gzip\""))
+                .andExpect(status().isOk());
+
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains("\"title\":\"Title One\""));
+        }
+        verify(mockService, times(1)).getBookById(1L);
+    }
+
+    @Test
+    void searchResultsAreCachedUntilTheCatalogChanges() throws Exception {
+        when(mockService.getAllBooksByKeywordInTitle(anyString(), eq(0), eq(50)))
+                .thenReturn(List.of(new Book("Title One", "Author A")));
+
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/books/search-title").param("keyword", "Title"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].title").value("Title One"));
+        }
+        verify(mockService, times(1)).getAllBooksByKeywordInTitle("Title", 0, 50);
+
+        when(mockService.getCatalogVersion()).thenReturn(new CatalogVersion(1_700_000_000_000L, 43, Instant.now()));
+        mockMvc.perform(get("/api/books/search-title").param("keyword", "title"))
+                .andExpect(status().isOk());
+        verify(mockService, times(1)).getAllBooksByKeywordInTitle("title", 0, 50);
+    }
+
+    @Test
+    void fuzzySearchIsCachedSeparatelyFromTheExactOne() throws Exception {
+        when(mockService.getAllBooksByKeywordInTitle(anyString(), eq(0), eq(50))).thenReturn(List.of());
+        when(mockService.getAllBooksBySimilarTitle(anyString(), eq(0), eq(50)))
+                .thenReturn(List.of(new Book("Harry Potter", "J.K. Rowling")));
+
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        mockMvc.perform(get("/api/books/search-title").param("keyword", "Hary Poter"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").isEmpty());
+        mockMvc.perform(get("/api/books/search-title/fuzzy").param("keyword", "Hary Poter"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].title").value("Harry Potter"));
+        verify(mockService, times(1)).getAllBooksBySimilarTitle("Hary Poter", 0, 50);
+    }
+
     @Test
     void createBookCreatesTheBook() throws Exception{
         Book inputBook = new Book("Title One", "Author A");
@@ -92,6 +303,30 @@ public class BookControllerTest {
                 .andExpect(jsonPath("$.author").value("Author A"));
     }
 
+    @Test
+    void malformedNdjsonLineIsABadRequestNamingTheLine() throws Exception {
+        when(mockService.createBooks(any())).thenAnswer(invocation -> {
+            Iterator<Book> books = invocation.getArgument(0);
+            long read = 0;
+            try {
+                while (books.hasNext()) {
+                    books.next();
+                    read++;
+                }
+            } catch (RuntimeException ex) {
+                throw new BulkInputException(read, new BulkResult(read, 0, List.of()), ex);
+            }
+            return new BulkResult(read, 0, List.of());
+        });
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+
+        mockMvc.perform(post("/api/books/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"title\":\"One\",\"author\":\"A\"}\n\n{\"title\":\"Two\",\"author\":\"A\"}\n{\"title\": oops}\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(status().reason("Malformed book on line 4; the lines before it were processed: 2 created, 0 failed"));
+    }
+
     @Test
     void deleteBookReturnsNoContentWhenBookIsDeleted() throws Exception {
         Long bookId = 1L;
@@ -121,4 +356,47 @@ public class BookControllerTest {
         mockMvc.perform(delete("/api/books/999", bookId))
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    void deleteBookWithIfMatchDeletesOnlyThatVersion() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        mockMvc.perform(delete("/api/books/1").header("If-Match", "\"3\""))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(delete("/api/books/1").header("If-Match", "\"4-gzip\""))
+                .andExpect(status().isNoContent());
+
+        verify(mockService).deleteBook(1L, 3L);
+        verify(mockService).deleteBook(1L, 4L);
+        verify(mockService, never()).deleteBook(1L);
+    }
+
+    @Test
+    void deleteBookWithStaleIfMatchReturnsPreconditionFailed() throws Exception {
+        doThrow(new BookVersionMismatchException(1L, 2L))
+                .when(mockService).deleteBook(1L, 2L);
+
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        mockMvc.perform(delete("/api/books/1").header("If-Match", "\"2\""))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    void deleteBookWithWeakIfMatchReturnsPreconditionFailed() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(controller)
+                .build();
+
+        mockMvc.perform(delete("/api/books/1").header("If-Match", "W/\"3\""))
+                .andExpect(status().isPreconditionFailed());
+
+        verify(mockService, never()).deleteBook(anyLong(), anyLong());
+        verify(mockService, never()).deleteBook(anyLong());
+    }
 }
@@ -1,22 +1,61 @@
 package org.ncp.book;
 
+import org.ncp.bookapi.cache.BookCache;
+import org.ncp.bookapi.cache.ResponseBodyCache;
+import org.ncp.bookapi.changes.ChangeFeed;
 import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.entities.BookChange;
 import org.ncp.bookapi.exceptions.BookNotFoundException;
+import org.ncp.bookapi.exceptions.BookVersionMismatchException;
+import org.ncp.bookapi.repositories.AuthorKeyCount;
+import org.ncp.bookapi.repositories.BookBatchLoader;
+import org.ncp.bookapi.repositories.BookBatchWriter;
 import org.ncp.bookapi.repositories.BookRepository;
 
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.ncp.bookapi.search.AuthorCount;
+import org.ncp.bookapi.search.AuthorIndex;
+import org.ncp.bookapi.search.TitleIndex;
 import org.ncp.bookapi.services.BookService.BookService;
+import org.ncp.bookapi.services.BookService.BulkInputException;
+import org.ncp.bookapi.services.BookService.BulkResult;
+import org.ncp.bookapi.services.BookService.CatalogVersion;
+import org.ncp.bookapi.snapshot.CatalogSnapshot;
+import org.ncp.bookapi.snapshot.CatalogSnapshotHolder;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Duration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class BookServiceTest {
     private final BookRepository repository = mock(BookRepository.class);
-    private final BookService service = new BookService(repository);
+    private final TitleIndex titleIndex = new TitleIndex();
+    private final AuthorIndex authorIndex = new AuthorIndex();
+    private final BookCache bookCache = new BookCache(100, Duration.ofMinutes(10), Duration.ofSeconds(30));
+    private final BookBatchWriter batchWriter = mock(BookBatchWriter.class);
+    private final ResponseBodyCache responseBodyCache = mock(ResponseBodyCache.class);
+    private final ChangeFeed changeFeed = mock(ChangeFeed.class);
+    // no batching window: single lookups go straight to findById
+    private final BookBatchLoader batchLoader = new BookBatchLoader(repository, Duration.ZERO, 100);
+    private final BookService service = new BookService(repository, titleIndex, authorIndex, bookCache, batchWriter,
+            batchLoader, responseBodyCache, changeFeed, new CatalogSnapshotHolder(false));
 
     @Test
     void createBookCreatedBookOnExecute()
@@ -25,6 +64,11 @@ public class BookServiceTest {
 
         //Example creating manually the test object
         Book book = new Book("Title", "Author");
+        when(repository.save(any(Book.class))).thenAnswer(invocation -> {
+            Book saved = invocation.getArgument(0);
+            saved.setId(1L);
+            return saved;
+        });
 
         service.createBook(book);
 
@@ -73,20 +117,23 @@ public class BookServiceTest {
     void deleteBookDeletesBookWhenItExists() {
         // Arrange
         Long bookId = 1L;
-        when(repository.existsById(bookId)).thenReturn(true);
+        when(repository.deleteBookById(bookId)).thenReturn(1);
 
         // Act
         service.deleteBook(bookId);
 
-        // Assert
-        verify(repository, times(1)).deleteById(bookId);
+        // Assert: one DELETE statement, no existence check or entity load
+        verify(repository, times(1)).deleteBookById(bookId);
+        verify(repository, never()).existsById(anyLong());
+        verify(repository, never()).deleteById(anyLong());
+        verify(responseBodyCache).invalidateBook(bookId);
     }
 
     @Test
     void shouldThrowExceptionWhenBookDoesNotExist() {
         // Arrange
         Long bookId = 99L;
-        when(repository.existsById(bookId)).thenReturn(false);
+        when(repository.deleteBookById(bookId)).thenReturn(0);
 
         // Act & Assert
         RuntimeException exception = assertThrows(BookNotFoundException.class, () -> {
@@ -97,6 +144,52 @@ public class BookServiceTest {
         verify(repository, never()).deleteById(anyLong());
     }
 
+    @Test
+    void createAndDeleteAreWrittenToTheChangeFeed() {
+        when(repository.save(any(Book.class))).thenAnswer(invocation -> {
+            Book saved = invocation.getArgument(0);
+            saved.setId(7L);
+            return saved;
+        });
+        when(repository.deleteBookById(7L)).thenReturn(1);
+        ArgumentCaptor<BookChange> changes = ArgumentCaptor.forClass(BookChange.class);
+
+        service.createBook(new Book("Dune", "Frank Herbert"));
+        service.deleteBook(7L);
+        assertThrows(BookNotFoundException.class, () -> service.deleteBook(8L));
+
+        verify(changeFeed, times(2)).record(changes.capture());
+        assertEquals(BookChange.Type.CREATED, changes.getAllValues().get(0).getType());
+        assertEquals("Dune", changes.getAllValues().get(0).getTitle());
+        assertEquals(BookChange.Type.DELETED, changes.getAllValues().get(1).getType());
+        assertEquals(7L, changes.getAllValues().get(1).getBookId());
+    }
+
+    @Test
+    void conditionalDeleteDeletesWhenTheVersionMatches() {
+        when(repository.deleteBookByIdAndVersion(1L, 3L)).thenReturn(1);
+
+        service.deleteBook(1L, 3L);
+
+        verify(repository, never()).existsById(anyLong());
+    }
+
+    @Test
+    void conditionalDeleteReportsAStaleVersion() {
+        when(repository.deleteBookByIdAndVersion(1L, 2L)).thenReturn(0);
+        when(repository.existsById(1L)).thenReturn(true);
+
+        assertThrows(BookVersionMismatchException.class, () -> service.deleteBook(1L, 2L));
+    }
+
+    @Test
+    void conditionalDeleteReportsAMissingBook() {
+        when(repository.deleteBookByIdAndVersion(1L, 2L)).thenReturn(0);
+        when(repository.existsById(1L)).thenReturn(false);
+
+        assertThrows(BookNotFoundException.class, () -> service.deleteBook(1L, 2L));
+    }
+
     @Test
     void getAllBooksReturnsAllBooksOnExecute() {
         List<Book> books = List.of(
@@ -110,4 +203,389 @@ public class BookServiceTest {
         assertEquals(2, result.size());
         verify(repository, times(1)).findAll();
     }
+
+    @Test
+    void getBooksAfterQueriesTheNextKeysetPage() {
+        List<Book> page = List.of(new Book("Title Three", "Author C"));
+        ArgumentCaptor<Limit> limitCaptor = ArgumentCaptor.forClass(Limit.class);
+        when(repository.findByIdGreaterThanOrderByIdAsc(eq(2L), any(Limit.class))).thenReturn(page);
+
+        var result = service.getBooksAfter(2L, 10);
+
+        assertEquals(page, result);
+        verify(repository).findByIdGreaterThanOrderByIdAsc(eq(2L), limitCaptor.capture());
+        assertEquals(10, limitCaptor.getValue().max());
+    }
+
+    @Test
+    void readsAreServedFromTheCatalogSnapshotOnceInstalled() {
+        CatalogSnapshotHolder snapshot = new CatalogSnapshotHolder(true);
+        BookService snapshotService = new BookService(repository, titleIndex, authorIndex, bookCache, batchWriter,
+                batchLoader, responseBodyCache, changeFeed, snapshot);
+        Book hobbit = new Book("The Hobbit", "J.R.R. Tolkien");
+        hobbit.setId(1L);
+        snapshot.install(CatalogSnapshot.builder().add(hobbit).build());
+        when(repository.save(any(Book.class))).thenAnswer(invocation -> {
+            Book saved = invocation.getArgument(0);
+            saved.setId(2L);
+            return saved;
+        });
+
+        snapshotService.createBook(new Book("The Silmarillion", "j.r.r.  tolkien"));
+
+        assertEquals(List.of(1L, 2L), snapshotService.getAllBooksByAuthor("J.R.R. TOLKIEN").stream().map(Book::getId).toList());
+        assertEquals(List.of(2L), snapshotService.getBooksAfter(1L, 10).stream().map(Book::getId).toList());
+        verify(repository, never()).findByAuthorKey(any());
+        verify(repository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void createBookMakesTheTitleSearchable() {
+        when(repository.save(any(Book.class))).thenAnswer(invocation -> {
+            Book saved = invocation.getArgument(0);
+            saved.setId(7L);
+            return saved;
+        });
+
+        service.createBook(new Book("The Hobbit", "Tolkien"));
+
+        assertEquals(List.of(7L), titleIndex.search("hobbit", 0, 10));
+    }
+
+    @Test
+    void getAllBooksByKeywordInTitleReturnsMatchesInRankingOrder() {
+        Book saga = new Book("The Potter Saga", "Author A");
+        saga.setId(1L);
+        Book potter = new Book("Potter", "Author B");
+        potter.setId(2L);
+        titleIndex.add(1L, saga.getTitle());
+        titleIndex.add(2L, potter.getTitle());
+        titleIndex.add(3L, "Unrelated");
+        when(repository.findAllById(List.of(2L, 1L))).thenReturn(List.of(saga, potter));
+
+        var result = service.getAllBooksByKeywordInTitle("POTTER", 0, 10);
+
+        assertEquals(List.of(potter, saga), result);
+    }
+
+    @Test
+    void deleteBookRemovesTheTitleFromTheIndex() {
+        titleIndex.add(1L, "The Hobbit");
+        when(repository.deleteBookById(1L)).thenReturn(1);
+
+        service.deleteBook(1L);
+
+        assertTrue(titleIndex.search("hobbit", 0, 10).isEmpty());
+    }
+
+    @Test
+    void getBookByIdServesRepeatedLookupsFromTheCache() {
+        Book book = new Book("Test Title", "Test Author");
+        book.setId(1L);
+        when(repository.findById(1L)).thenReturn(Optional.of(book));
+
+        service.getBookById(1L);
+        Optional<Book> result = service.getBookById(1L);
+
+        assertEquals("Test Title", result.orElseThrow().getTitle());
+        verify(repository, times(1)).findById(1L);
+        assertEquals(1, service.getBookCacheStats().hits());
+        assertEquals(1, service.getBookCacheStats().misses());
+    }
+
+    @Test
+    void getBookByIdLoadsOtherIdsWhileASlowLoadIsInProgress() throws Exception {
+        Book slow = new Book("Slow", "Author");
+        slow.setId(1L);
+        Book other = new Book("Other", "Author");
+        other.setId(2L);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        when(repository.findById(1L)).thenAnswer(invocation -> {
+            loading.countDown();
+            released.await();
+            return Optional.of(slow);
+        });
+        when(repository.findById(2L)).thenReturn(Optional.of(other));
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Book>> first = threads.submit(() -> service.getBookById(1L));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            Future<Optional<Book>> sameId = threads.submit(() -> service.getBookById(1L));
+
+            assertEquals("Other", service.getBookById(2L).orElseThrow().getTitle());
+            released.countDown();
+            assertEquals("Slow", first.get(10, TimeUnit.SECONDS).orElseThrow().getTitle());
+            assertEquals("Slow", sameId.get(10, TimeUnit.SECONDS).orElseThrow().getTitle());
+            verify(repository, times(1)).findById(1L);
+        } finally {
+            released.countDown();
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void getBookByIdReturnsCopiesThatCannotChangeTheCachedBook() {
+        Book book = new Book("Test Title", "Test Author");
+        book.setId(1L);
+        when(repository.findById(1L)).thenReturn(Optional.of(book));
+
+        service.getBookById(1L).orElseThrow().setTitle("Changed");
+
+        assertEquals("Test Title", service.getBookById(1L).orElseThrow().getTitle());
+    }
+
+    @Test
+    void getBookByIdCachesMissesUntilTheBookIsCreated() {
+        Book book = new Book("Test Title", "Test Author");
+        book.setId(5L);
+        when(repository.findById(5L)).thenReturn(Optional.empty());
+        when(repository.save(any(Book.class))).thenReturn(book);
+
+        assertTrue(service.getBookById(5L).isEmpty());
+        assertTrue(service.getBookById(5L).isEmpty());
+        verify(repository, times(1)).findById(5L);
+
+        service.createBook(new Book("Test Title", "Test Author"));
+        when(repository.findById(5L)).thenReturn(Optional.of(book));
+
+        assertTrue(service.getBookById(5L).isPresent());
+    }
+
+    @Test
+    void getBooksByIdsQueriesOnlyTheUncachedIdsOnce() {
+        Book first = new Book("First", "Author");
+        first.setId(1L);
+        Book second = new Book("Second", "Author");
+        second.setId(2L);
+        when(repository.findById(1L)).thenReturn(Optional.of(first));
+        when(repository.findAllById(any())).thenReturn(List.of(second));
+        service.getBookById(1L);
+
+        List<Book> books = service.getBooksByIds(List.of(2L, 1L, 3L, 2L));
+
+        assertEquals(List.of(2L, 1L), books.stream().map(Book::getId).toList());
+        verify(repository).findAllById(Set.of(2L, 3L));
+        // the unknown id is remembered as a miss
+        service.getBooksByIds(List.of(3L));
+        verify(repository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void deleteBookInvalidatesTheCachedBook() {
+        Book book = new Book("Test Title", "Test Author");
+        book.setId(1L);
+        when(repository.findById(1L)).thenReturn(Optional.of(book));
+        when(repository.deleteBookById(1L)).thenReturn(1);
+        service.getBookById(1L);
+
+        service.deleteBook(1L);
+        when(repository.findById(1L)).thenReturn(Optional.empty());
+
+        assertTrue(service.getBookById(1L).isEmpty());
+    }
+
+    @Test
+    void createBooksInsertsInChunksAndReportsFailedChunks() {
+        when(batchWriter.getBatchSize()).thenReturn(2);
+        when(batchWriter.insertChunk(anyList()))
+                .thenAnswer(invocation -> withIds(invocation.getArgument(0), 1L))
+                .thenThrow(new DataIntegrityViolationException("duplicate"))
+                .thenAnswer(invocation -> withIds(invocation.getArgument(0), 5L));
+        List<Book> books = List.of(
+                new Book("Book One", "A"), new Book("Book Two", "A"),
+                new Book("Book Three", "B"), new Book("Book Four", "B"),
+                new Book("Book Five", "C"));
+
+        BulkResult result = service.createBooks(books.iterator());
+
+        assertEquals(3, result.succeeded());
+        assertEquals(2, result.failed());
+        assertEquals(3, result.chunks().size());
+        assertNull(result.chunks().get(0).error());
+        assertEquals(2, result.chunks().get(1).offset());
+        assertEquals("duplicate", result.chunks().get(1).error());
+        assertEquals(1, result.chunks().get(2).size());
+        assertEquals(List.of(5L), titleIndex.search("five", 0, 10));
+        assertTrue(titleIndex.search("three", 0, 10).isEmpty());
+    }
+
+    @Test
+    void createBooksInsertsWhatWasReadBeforeUnreadableInput() {
+        when(batchWriter.getBatchSize()).thenReturn(2);
+        when(batchWriter.insertChunk(anyList()))
+                .thenAnswer(invocation -> withIds(invocation.getArgument(0), 1L))
+                .thenAnswer(invocation -> withIds(invocation.getArgument(0), 3L));
+        Iterator<Book> books = List.of(new Book("Book One", "A"), new Book("Book Two", "A"), new Book("Book Three", "B"))
+                .iterator();
+        Iterator<Book> input = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Book next() {
+                if (!books.hasNext()) {
+                    throw new IllegalStateException("malformed");
+                }
+                return books.next();
+            }
+        };
+
+        BulkInputException ex = assertThrows(BulkInputException.class, () -> service.createBooks(input));
+
+        assertEquals(3, ex.getPosition());
+        assertEquals(3, ex.getProcessed().succeeded());
+        assertEquals(2, ex.getProcessed().chunks().size());
+        assertEquals(List.of(3L), titleIndex.search("three", 0, 10));
+    }
+
+    @Test
+    void rebuildIndexesKeepsTheWritesMadeWhileItStreams() {
+        ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
+        titleIndex.add(1L, "The Hobbit");
+        authorIndex.add(1L, "Tolkien");
+        Book hobbit = new Book("The Hobbit", "Tolkien");
+        hobbit.setId(1L);
+        Book dune = new Book("Dune", "Frank Herbert");
+        dune.setId(2L);
+        when(repository.deleteBookById(1L)).thenReturn(1);
+        // the hobbit is deleted once the pass has read (and cached) it
+        when(repository.streamAllOrderedById()).thenAnswer(invocation -> Stream.of(hobbit, dune)
+                .peek(book -> {
+                    if (book == dune) {
+                        service.deleteBook(1L);
+                    }
+                }));
+
+        assertEquals(2, service.rebuildIndexes(10));
+
+        assertEquals(List.of(), titleIndex.search("hobbit", 0, 10));
+        assertEquals(List.of(2L), titleIndex.search("dune", 0, 10));
+        assertEquals(1, authorIndex.bookCount());
+        assertTrue(bookCache.get(1L, id -> Optional.empty()).isEmpty());
+        assertTrue(bookCache.get(2L, id -> Optional.empty()).isPresent());
+    }
+
+    @Test
+    void reconcileAuthorStatsKeepsTheWritesMadeWhileItStreamsAndBumpsTheVersion() {
+        ReflectionTestUtils.setField(service, "entityManager", mock(EntityManager.class));
+        // the index lost Dune and still counts a book that was deleted behind the service
+        authorIndex.add(1L, "Tolkien");
+        authorIndex.add(5L, "Nobody");
+        Book hobbit = new Book("The Hobbit", "Tolkien");
+        hobbit.setId(1L);
+        Book dune = new Book("Dune", "Frank Herbert");
+        dune.setId(2L);
+        AuthorKeyCount tolkien = mock(AuthorKeyCount.class);
+        when(tolkien.getAuthorKey()).thenReturn("tolkien");
+        when(tolkien.getBooks()).thenReturn(1L);
+        when(repository.countByAuthorKey()).thenReturn(List.of(tolkien));
+        when(repository.deleteBookById(1L)).thenReturn(1);
+        // the hobbit is deleted once the pass has read it
+        when(repository.streamAllOrderedById()).thenAnswer(invocation -> Stream.of(hobbit, dune)
+                .peek(book -> {
+                    if (book == dune) {
+                        service.deleteBook(1L);
+                    }
+                }));
+        CatalogVersion before = service.getCatalogVersion();
+
+        assertTrue(service.reconcileAuthorStats());
+
+        assertEquals(Map.of("frank herbert", 1L), authorIndex.countsByKey());
+        assertEquals(1, authorIndex.bookCount());
+        // one version for the delete, one for the repair
+        assertEquals(before.generation() + 2, service.getCatalogVersion().generation());
+    }
+
+    @Test
+    void deleteBooksDeletesEachChunkWithOneStatement() {
+        when(batchWriter.getBatchSize()).thenReturn(2);
+        when(batchWriter.deleteChunk(List.of(1L, 2L))).thenReturn(List.of(1L, 2L));
+        when(batchWriter.deleteChunk(List.of(3L))).thenReturn(List.of());
+        titleIndex.add(1L, "The Hobbit");
+
+        BulkResult result = service.deleteBooks(List.of(1L, 2L, 3L));
+
+        assertEquals(2, result.succeeded());
+        assertEquals(0, result.failed());
+        assertEquals(2, result.chunks().size());
+        assertTrue(titleIndex.search("hobbit", 0, 10).isEmpty());
+    }
+
+    @Test
+    void deleteBooksMakesOneCatalogVersionPerChunkThatDeletedAnything() {
+        when(batchWriter.getBatchSize()).thenReturn(3);
+        when(batchWriter.deleteChunk(List.of(1L, 2L, 3L))).thenReturn(List.of(1L, 3L));
+        when(batchWriter.deleteChunk(List.of(4L, 5L, 6L))).thenReturn(List.of());
+        long generation = service.getCatalogVersion().generation();
+
+        BulkResult result = service.deleteBooks(List.of(1L, 2L, 3L, 4L, 5L, 6L));
+
+        assertEquals(2, result.succeeded());
+        assertEquals(generation + 1, service.getCatalogVersion().generation());
+        verify(responseBodyCache).invalidateBook(1L);
+        verify(responseBodyCache).invalidateBook(3L);
+        verify(responseBodyCache, never()).invalidateBook(2L);
+        verify(responseBodyCache, never()).invalidateBook(4L);
+    }
+
+    private static List<Book> withIds(List<Book> books, long firstId) {
+        for (int i = 0; i < books.size(); i++) {
+            books.get(i).setId(firstId + i);
+        }
+        return books;
+    }
+
+    @Test
+    void getAllBooksByAuthorLooksUpTheNormalizedAuthor() {
+        List<Book> books = List.of(new Book("The Hobbit", "J.R.R. Tolkien"));
+        when(repository.findByAuthorKey("j.r.r. tolkien")).thenReturn(books);
+
+        assertEquals(books, service.getAllBooksByAuthor("  J.R.R.   TOLKIEN "));
+    }
+
+    @Test
+    void createdAndDeletedBooksAreCountedPerAuthor() {
+        when(repository.save(any(Book.class))).thenAnswer(invocation -> {
+            Book saved = invocation.getArgument(0);
+            saved.setId(saved.getTitle().length() + 0L);
+            return saved;
+        });
+        service.createBook(new Book("Dune", "Frank Herbert"));
+        service.createBook(new Book("Children of Dune", "frank herbert"));
+        service.createBook(new Book("Frankenstein", "Mary Shelley"));
+        when(repository.deleteBookById(4L)).thenReturn(1);
+
+        assertEquals(List.of(new AuthorCount("Frank Herbert", 2)), service.completeAuthors("fra", 10));
+
+        service.deleteBook(4L);
+
+        assertEquals(List.of(new AuthorCount("Frank Herbert", 1)), service.completeAuthors("FRANK", 10));
+    }
+
+    @Test
+    void catalogVersionChangesOnEveryCreateAndDeleteOnly() {
+        when(repository.save(any(Book.class))).thenAnswer(invocation -> {
+            Book saved = invocation.getArgument(0);
+            saved.setId(1L);
+            return saved;
+        });
+        when(repository.deleteBookById(1L)).thenReturn(1);
+        CatalogVersion initial = service.getCatalogVersion();
+
+        service.getBookById(1L);
+        assertEquals(initial, service.getCatalogVersion());
+
+        service.createBook(new Book("Dune", "Frank Herbert"));
+        CatalogVersion created = service.getCatalogVersion();
+        assertNotEquals(initial.entityTag(), created.entityTag());
+
+        service.deleteBook(1L);
+        assertNotEquals(created.entityTag(), service.getCatalogVersion().entityTag());
+        assertEquals(initial.bootEpoch(), service.getCatalogVersion().bootEpoch());
+    }
 }
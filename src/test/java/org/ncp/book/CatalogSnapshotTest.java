@@ -0,0 +1,227 @@
+package org.ncp.book;
+
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.snapshot.CatalogSnapshot;
+import org.ncp.bookapi.snapshot.CatalogSnapshotHolder;
+import org.ncp.bookapi.snapshot.CatalogSnapshotStats;
+import org.ncp.bookapi.snapshot.CatalogView;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CatalogSnapshotTest {
+
+    @Test
+    void rowsReadBackEveryField() {
+        Book book = book(5L, "\u00dcberwald Tales", "Terry Pratchett");
+        book.setVersion(3L);
+        book.setLastModified(Instant.parse("2024-05-01T10:15:30.123456789Z"));
+        CatalogSnapshot snapshot = CatalogSnapshot.builder()
+                .add(book)
+                .add(book(9L, null, null))
+                .build();
+
+        var first = snapshot.row(snapshot.rowOf(5L));
+        assertEquals("\u00dcberwald Tales", first.title());
+        assertEquals("Terry Pratchett", first.author());
+        assertEquals(3L, first.version());
+        assertEquals(Instant.parse("2024-05-01T10:15:30.123456789Z"), first.lastModified());
+        var second = snapshot.row(snapshot.rowOf(9L));
+        assertNull(second.title());
+        assertNull(second.author());
+        assertNull(second.version());
+        assertNull(second.lastModified());
+        assertTrue(snapshot.rowOf(7L) < 0);
+    }
+
+    @Test
+    void authorsAreStoredOnceAndFoundByNormalizedName() {
+        CatalogSnapshot snapshot = CatalogSnapshot.builder()
+                .add(book(1L, "Mort", "Terry Pratchett"))
+                .add(book(2L, "Emma", "Jane Austen"))
+                .add(book(3L, "Eric", "terry  pratchett"))
+                .add(book(4L, "Jingo", "Terry Pratchett"))
+                .build();
+
+        assertEquals(3, snapshot.authorCount());
+        assertArrayEquals(new int[]{0, 2, 3}, snapshot.rowsOfAuthorKey("terry pratchett"));
+        assertEquals(0, snapshot.rowsOfAuthorKey("nobody").length);
+    }
+
+    @Test
+    void booksMustBeAddedInIdOrder() {
+        CatalogSnapshot.Builder builder = CatalogSnapshot.builder().add(book(2L, "B", "A"));
+
+        assertThrows(IllegalArgumentException.class, () -> builder.add(book(1L, "A", "A")));
+    }
+
+    @Test
+    void writesSwapInANewViewAndLeaveTheOldOneAlone() {
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder(true);
+        holder.install(CatalogSnapshot.builder()
+                .add(book(1L, "Mort", "Terry Pratchett"))
+                .add(book(3L, "Eric", "Terry Pratchett"))
+                .build());
+        CatalogView before = holder.current();
+
+        holder.upsert(book(2L, "Emma", "Jane Austen"));
+        holder.upsert(book(3L, "Eric, revised", "Terry Pratchett"));
+        holder.remove(1L);
+
+        assertEquals(List.of("Mort", "Eric"), titles(before.all()));
+        assertEquals(List.of("Emma", "Eric, revised"), titles(holder.current().all()));
+        assertEquals(List.of("Eric, revised"), titles(holder.current().booksAfter(2L, 10)));
+        assertEquals(List.of("Eric, revised"), titles(holder.current().booksByAuthorKey("terry pratchett")));
+        assertTrue(holder.current().find(1L).isEmpty());
+    }
+
+    @Test
+    void aLargeOverlayIsFoldedIntoANewSnapshot() {
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder(true, Runnable::run);
+        holder.install(CatalogSnapshot.builder().add(book(1L, "First", "Author")).build());
+
+        for (long id = 2; id <= 6000; id++) {
+            holder.upsert(book(id, "Title " + id, "Author " + (id % 10)));
+        }
+        holder.remove(1L);
+
+        CatalogSnapshotStats stats = holder.stats();
+        assertTrue(stats.overlayEntries() < 6000);
+        List<Book> all = holder.current().all();
+        assertEquals(5999, all.size());
+        assertEquals(2L, all.get(0).getId());
+        assertEquals(6000L, all.get(all.size() - 1).getId());
+        assertEquals(600, holder.current().booksByAuthorKey("author 0").size());
+    }
+
+    @Test
+    void foldsRunOffTheWritePathAndKeepTheWritesMadeMeanwhile() {
+        List<Runnable> folds = new ArrayList<>();
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder(true, folds::add);
+        holder.install(CatalogSnapshot.builder().add(book(1L, "First", "Author")).build());
+        for (long id = 2; id <= 4098; id++) {
+            holder.upsert(book(id, "Title " + id, "Author"));
+        }
+        assertEquals(1, folds.size());
+        // the write that crossed the threshold did not fold the overlay itself
+        assertEquals(4097, holder.stats().overlayEntries());
+
+        holder.upsert(book(5000L, "Written during the fold", "Author"));
+        holder.upsert(book(2L, "Title 2, revised", "Author"));
+        holder.remove(1L);
+        assertEquals(1, folds.size());
+        folds.get(0).run();
+
+        assertEquals(3, holder.stats().overlayEntries());
+        List<Book> all = holder.current().all();
+        assertEquals(4098, all.size());
+        assertEquals("Title 2, revised", all.get(0).getTitle());
+        assertEquals("Written during the fold", all.get(all.size() - 1).getTitle());
+        assertTrue(holder.current().find(1L).isEmpty());
+    }
+
+    @Test
+    void aRebuildInstalledDuringAFoldWins() {
+        List<Runnable> folds = new ArrayList<>();
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder(true, folds::add);
+        holder.install(CatalogSnapshot.builder().build());
+        for (long id = 1; id <= 4097; id++) {
+            holder.upsert(book(id, "Title " + id, "Author"));
+        }
+
+        holder.install(CatalogSnapshot.builder().add(book(1L, "Rebuilt", "Author")).build());
+        folds.get(0).run();
+
+        assertEquals(List.of("Rebuilt"), titles(holder.current().all()));
+    }
+
+    @Test
+    void randomWritesReadBackLikeASortedMap() {
+        Random random = new Random(7);
+        CatalogSnapshot.Builder base = CatalogSnapshot.builder();
+        TreeMap<Long, String> expected = new TreeMap<>();
+        for (long id = 1; id <= 10_000; id += 3) {
+            base.add(book(id, "Base " + id, "Author " + id % 4));
+            expected.put(id, "Base " + id);
+        }
+        AtomicInteger folds = new AtomicInteger();
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder(true, fold -> {
+            folds.incrementAndGet();
+            fold.run();
+        });
+        holder.install(base.build());
+
+        // enough writes for the overlay to be folded along the way
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(10_000);
+            if (random.nextInt(3) == 0) {
+                holder.remove(id);
+                expected.remove(id);
+            } else {
+                holder.upsert(book(id, "Write " + i, "Author " + id % 4));
+                expected.put(id, "Write " + i);
+            }
+        }
+
+        CatalogView view = holder.current();
+        assertTrue(folds.get() > 0);
+        assertEquals(List.copyOf(expected.values()), titles(view.all()));
+        assertEquals(List.copyOf(expected.tailMap(5000L, false).values()).subList(0, 10), titles(view.booksAfter(5000L, 10)));
+        assertEquals(expected.keySet().stream().filter(id -> id % 4 == 1).toList(),
+                view.booksByAuthorKey("author 1").stream().map(Book::getId).toList());
+    }
+
+    @Test
+    void writesDuringARebuildAreReplayedOnTheRebuiltSnapshot() {
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder(true);
+        CatalogSnapshot.Builder builder = holder.beginRebuild();
+        builder.add(book(1L, "Mort", "Terry Pratchett"));
+        holder.upsert(book(2L, "Emma", "Jane Austen"));
+        holder.remove(1L);
+
+        holder.install(builder.build());
+
+        assertEquals(List.of("Emma"), titles(holder.current().all()));
+    }
+
+    @Test
+    void disabledHolderServesNothing() {
+        CatalogSnapshotHolder holder = new CatalogSnapshotHolder(false);
+
+        assertNull(holder.beginRebuild());
+        holder.upsert(book(1L, "Mort", "Terry Pratchett"));
+        assertNull(holder.current());
+    }
+
+    @Test
+    void snapshotIsSmallerThanTheEntityGraph() {
+        CatalogSnapshot.Builder builder = CatalogSnapshot.builder();
+        for (long id = 1; id <= 10_000; id++) {
+            builder.add(book(id, "A Title Number " + id, "Author Name " + (id % 100)));
+        }
+
+        CatalogSnapshotStats stats = builder.build().stats(0);
+
+        assertEquals(10_000, stats.books());
+        assertEquals(100, stats.authors());
+        assertTrue(stats.snapshotBytes() * 3 < stats.entityBytes());
+        assertTrue(stats.entityBytes() < stats.managedEntityBytes());
+    }
+
+    private static Book book(Long id, String title, String author) {
+        Book book = new Book(title, author);
+        book.setId(id);
+        return book;
+    }
+
+    private static List<String> titles(List<Book> books) {
+        return books.stream().map(Book::getTitle).toList();
+    }
+}
@@ -0,0 +1,187 @@
+package org.ncp.book;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.changes.ChangeFeed;
+import org.ncp.bookapi.changes.ChangesPrunedException;
+import org.ncp.bookapi.entities.Book;
+import org.ncp.bookapi.entities.BookChange;
+import org.ncp.bookapi.repositories.BookChangeRepository;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ChangeFeedTest {
+
+    private final BookChangeRepository repository = mock(BookChangeRepository.class);
+    private final ChangeFeed changeFeed = new ChangeFeed(repository, Runnable::run, Duration.ofDays(7));
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void readersStopBeforeTheFirstUncommittedChange() {
+        when(repository.nextSeqBlock()).thenReturn(5L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        changeFeed.record(BookChange.created(new Book("Dune", "Frank Herbert")));
+
+        // change 5 is not committed yet: only 1..4 may be read
+        changeFeed.changesSince(0, 100);
+        verify(repository).findBySeqGreaterThanAndSeqLessThanOrderBySeqAsc(0L, 5L, Limit.of(100));
+        assertEquals(List.of(), changeFeed.changesSince(4, 100));
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        // nothing after 5 has been handed out yet
+        changeFeed.changesSince(4, 100);
+        verify(repository).findBySeqGreaterThanAndSeqLessThanOrderBySeqAsc(4L, 6L, Limit.of(100));
+    }
+
+    @Test
+    void concurrentWritersNeverMakeAReaderSkipAChange() throws Exception {
+        int writers = 8;
+        int changesPerWriter = 200;
+        long total = (long) writers * changesPerWriter;
+        AtomicLong sequence = new AtomicLong(1);
+        ConcurrentSkipListMap<Long, BookChange> committed = new ConcurrentSkipListMap<>();
+        when(repository.nextSeqBlock()).thenAnswer(invocation -> sequence.getAndAdd(100));
+        when(repository.save(any(BookChange.class))).thenAnswer(invocation -> {
+            // widens the gap between taking a number and the end of the insert
+            Thread.yield();
+            return invocation.getArgument(0);
+        });
+        when(repository.findBySeqGreaterThanAndSeqLessThanOrderBySeqAsc(anyLong(), anyLong(), any(Limit.class)))
+                .thenAnswer(invocation -> {
+                    long since = invocation.getArgument(0);
+                    long before = invocation.getArgument(1);
+                    Limit limit = invocation.getArgument(2);
+                    return committed.subMap(since, false, before, false).values().stream()
+                            .limit(limit.max())
+                            .toList();
+                });
+        ExecutorService pool = Executors.newFixedThreadPool(writers + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try {
+            Future<List<Long>> reader = pool.submit(() -> {
+                List<Long> seen = new ArrayList<>();
+                long last = 0;
+                while (true) {
+                    boolean done = !writing.get();
+                    for (BookChange change : changeFeed.changesSince(last, 50)) {
+                        seen.add(change.getSeq());
+                        last = change.getSeq();
+                    }
+                    if (done && last == total) {
+                        return seen;
+                    }
+                }
+            });
+            List<Future<?>> writes = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                writes.add(pool.submit(() -> {
+                    for (int i = 0; i < changesPerWriter; i++) {
+                        TransactionSynchronizationManager.initSynchronization();
+                        try {
+                            BookChange change = BookChange.deleted((long) i);
+                            changeFeed.record(change);
+                            if (ThreadLocalRandom.current().nextBoolean()) {
+                                Thread.yield();
+                            }
+                            committed.put(change.getSeq(), change);
+                            TransactionSynchronizationManager.getSynchronizations()
+                                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+                        } finally {
+                            TransactionSynchronizationManager.clearSynchronization();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get(30, TimeUnit.SECONDS);
+            }
+            writing.set(false);
+
+            List<Long> seen = reader.get(30, TimeUnit.SECONDS);
+            assertEquals(writers * changesPerWriter, seen.size());
+            for (int i = 0; i < seen.size(); i++) {
+                assertEquals(i + 1, seen.get(i));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void pruningTurnsAwayReadersThatAreTooFarBehind() {
+        when(repository.findMaxSeqChangedBefore(any(Instant.class))).thenReturn(40L);
+
+        changeFeed.prune();
+
+        // change 40 stays, marking where the log starts
+        verify(repository).deleteBySeqLessThanEqual(39L);
+        assertThrows(ChangesPrunedException.class, () -> changeFeed.changesSince(10, 100));
+        assertThrows(ChangesPrunedException.class, () -> changeFeed.subscribe(0));
+        assertEquals(List.of(), changeFeed.changesSince(39, 100));
+    }
+
+    @Test
+    void aRestartedFeedStillTurnsAwayReadersOfPrunedChanges() {
+        when(repository.findMaxSeqChangedBefore(any(Instant.class))).thenReturn(40L);
+        changeFeed.prune();
+        when(repository.findMinSeq()).thenReturn(40L);
+
+        ChangeFeed restarted = new ChangeFeed(repository, Runnable::run, Duration.ofDays(7));
+
+        assertThrows(ChangesPrunedException.class, () -> restarted.changesSince(10, 100));
+        assertThrows(ChangesPrunedException.class, () -> restarted.subscribe(0));
+        assertEquals(List.of(), restarted.changesSince(39, 100));
+    }
+
+    @Test
+    void numbersAreHandedOutInBlocksAndTheInsertRunsOutsideTheLock() {
+        when(repository.nextSeqBlock()).thenReturn(101L, 201L);
+        List<Boolean> lockHeldDuringSave = new ArrayList<>();
+        when(repository.save(any(BookChange.class))).thenAnswer(invocation -> {
+            lockHeldDuringSave.add(((ReentrantLock) ReflectionTestUtils.getField(changeFeed, "sequenceLock")).isLocked());
+            return invocation.getArgument(0);
+        });
+
+        List<Long> numbers = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            BookChange change = BookChange.deleted((long) i);
+            changeFeed.record(change);
+            numbers.add(change.getSeq());
+        }
+
+        assertEquals(LongStream.range(101, 201).boxed().toList(), numbers.subList(0, 100));
+        assertEquals(201L, numbers.get(100));
+        verify(repository, times(2)).nextSeqBlock();
+        assertFalse(lockHeldDuringSave.contains(true));
+    }
+}
@@ -0,0 +1,54 @@
+package org.ncp.book;
+
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.ratelimit.ConcurrencyLimiter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long TARGET = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong now = new AtomicLong();
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 2, 8, TARGET, now::get);
+
+    @Test
+    void rejectsAboveTheLimit() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        assertEquals(4, limiter.inFlight());
+
+        limiter.release(TARGET / 2);
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void slowRequestsShrinkTheLimitAtMostOncePerTargetLatency() {
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire();
+            limiter.release(TARGET * 3);
+        }
+        assertEquals(3, limiter.limit());
+
+        for (int i = 0; i < 20; i++) {
+            now.addAndGet(TARGET);
+            limiter.tryAcquire();
+            limiter.release(TARGET * 3);
+        }
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    void fastRequestsGrowTheLimitUpToTheMaximum() {
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire();
+            limiter.release(TARGET / 10);
+        }
+        assertEquals(8, limiter.limit());
+    }
+}
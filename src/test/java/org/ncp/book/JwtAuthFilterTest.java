@@ -0,0 +1,83 @@
+package org.ncp.book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.auth.JwtAuthFilter;
+import org.ncp.bookapi.auth.JwtKeyRing;
+import org.ncp.bookapi.auth.JwtProperties;
+import org.ncp.bookapi.auth.JwtUtil;
+import org.ncp.bookapi.auth.TokenDenyList;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtAuthFilterTest {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final JwtAuthFilter filter = new JwtAuthFilter(jwtUtil, meterRegistry);
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void verifiedTokensAuthenticateAndAreTimed() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+        request.addHeader("Authorization", "Bearer " + jwtUtil.generateToken("testuser"));
+
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals("testuser", SecurityContextHolder.getContext().getAuthentication().getName());
+        assertEquals(1, meterRegistry.get("bookapi.jwt.verification").tag("outcome", "verified").timer().count());
+    }
+
+    @Test
+    void requestsWithoutTokenAreNotTimed() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("GET", "/api/books"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertEquals(0, meterRegistry.get("bookapi.jwt.verification").tag("outcome", "verified").timer().count());
+    }
+
+    @Test
+    void expiredTokensLeaveTheRequestUnauthenticatedAndAreTimedAsRejected() throws Exception {
+        JwtKeyRing keyRing = JwtKeyRing.from(JwtProperties.defaults());
+        JwtUtil verifier = new JwtUtil(keyRing, Duration.ofMinutes(15), Duration.ofDays(14), new TokenDenyList(100));
+        JwtUtil expiredIssuer = new JwtUtil(keyRing, Duration.ofMinutes(-1), Duration.ofDays(14), new TokenDenyList(100));
+        JwtAuthFilter filter = new JwtAuthFilter(verifier, meterRegistry);
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/logout");
+        request.addHeader("Authorization", "Bearer " + expiredIssuer.generateToken("testuser"));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("someone else", null, List.of()));
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        assertEquals(1, meterRegistry.get("bookapi.jwt.verification").tag("outcome", "rejected").timer().count());
+    }
+
+    @Test
+    void tamperedTokensLeaveTheRequestUnauthenticated() throws Exception {
+        String token = jwtUtil.generateToken("testuser");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/books");
+        request.addHeader("Authorization", "Bearer " + token.substring(0, token.length() - 2) + "xx");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+}
@@ -0,0 +1,159 @@
+package org.ncp.book;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.auth.JwtProperties;
+import org.ncp.bookapi.auth.JwtUtil;
+import org.ncp.bookapi.auth.TokenDenyList;
+import org.ncp.bookapi.auth.TokenPair;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilTest {
+
+    private final JwtUtil jwtUtil = new JwtUtil();
+
+    @Test
+    void verifiedClaimsAreParsedOnceAndReused() {
+        String token = jwtUtil.generateToken("testuser");
+
+        Claims first = jwtUtil.getVerifiedClaims(token);
+        Claims second = jwtUtil.getVerifiedClaims(token);
+
+        assertEquals("testuser", first.getSubject());
+        assertSame(first, second);
+    }
+
+    @Test
+    void authoritiesAreCarriedInTheToken() {
+        String token = jwtUtil.generateToken("testuser", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+
+        Claims claims = jwtUtil.getVerifiedClaims(token);
+
+        assertTrue(jwtUtil.validateToken(claims));
+        assertEquals(List.of(new SimpleGrantedAuthority("ROLE_USER")), jwtUtil.extractAuthorities(claims));
+    }
+
+    @Test
+    void tokensWithoutAuthoritiesGrantNone() {
+        Claims claims = jwtUtil.getVerifiedClaims(jwtUtil.generateToken("testuser"));
+
+        assertTrue(jwtUtil.extractAuthorities(claims).isEmpty());
+    }
+
+    @Test
+    void tokensSignedWithAnotherKeyAreRejected() {
+        String foreignToken = new JwtUtil().generateToken("testuser");
+
+        assertThrows(JwtException.class, () -> jwtUtil.getVerifiedClaims(foreignToken));
+    }
+
+    @Test
+    void tokensSignedWithARotatedOutKeyStillVerifyWhileTheKeyIsInTheRing() {
+        String oldSecret = secret();
+        JwtUtil beforeRotation = new JwtUtil(new JwtProperties(List.of(new JwtProperties.Key("k1", oldSecret)),
+                null, Duration.ofMinutes(15), Duration.ofDays(14), 1000));
+        JwtUtil afterRotation = new JwtUtil(new JwtProperties(
+                List.of(new JwtProperties.Key("k1", oldSecret), new JwtProperties.Key("k2", secret())),
+                "k2", Duration.ofMinutes(15), Duration.ofDays(14), 1000));
+        JwtUtil withoutOldKey = new JwtUtil(new JwtProperties(List.of(new JwtProperties.Key("k2", secret())),
+                null, Duration.ofMinutes(15), Duration.ofDays(14), 1000));
+
+        String oldToken = beforeRotation.generateToken("testuser");
+
+        assertEquals("testuser", afterRotation.getVerifiedClaims(oldToken).getSubject());
+        assertThrows(JwtException.class, () -> withoutOldKey.getVerifiedClaims(oldToken));
+    }
+
+    @Test
+    void refreshTokensDoNotAuthorizeRequests() {
+        TokenPair tokens = jwtUtil.generateTokenPair("testuser", List.of());
+
+        assertTrue(jwtUtil.validateToken(jwtUtil.getVerifiedClaims(tokens.accessToken())));
+        assertFalse(jwtUtil.validateToken(jwtUtil.getVerifiedClaims(tokens.refreshToken())));
+        assertThrows(JwtException.class, () -> jwtUtil.verifyRefreshToken(tokens.accessToken()));
+        assertEquals("testuser", jwtUtil.verifyRefreshToken(tokens.refreshToken()).getSubject());
+    }
+
+    @Test
+    void revokedTokensAreRejectedEvenWhenCached() {
+        TokenPair tokens = jwtUtil.generateTokenPair("testuser", List.of());
+        Claims access = jwtUtil.getVerifiedClaims(tokens.accessToken());
+
+        jwtUtil.revoke(access);
+        jwtUtil.revoke(jwtUtil.verifyRefreshToken(tokens.refreshToken()));
+
+        assertFalse(jwtUtil.validateToken(jwtUtil.getVerifiedClaims(tokens.accessToken())));
+        assertThrows(JwtException.class, () -> jwtUtil.verifyRefreshToken(tokens.refreshToken()));
+        assertTrue(jwtUtil.validateToken(jwtUtil.getVerifiedClaims(jwtUtil.generateToken("testuser"))));
+    }
+
+    @Test
+    void denyListForgetsExpiredIdsAndNeverReportsFalsePositives() {
+        AtomicLong now = new AtomicLong(1_700_000_000_000L);
+        TokenDenyList denyList = new TokenDenyList(100, now::get);
+        long inAnHour = now.get() + 3_600_000;
+        for (int i = 0; i < 1000; i++) {
+            denyList.revoke("revoked-" + i, inAnHour);
+        }
+        denyList.revoke("short-lived", now.get() + 30_000);
+        denyList.revoke("already-expired", now.get() - 1);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(denyList.isRevoked("revoked-" + i));
+            // the filter is far over capacity, so it hits often; the exact map settles it
+            assertFalse(denyList.isRevoked("valid-" + i));
+        }
+        assertFalse(denyList.isRevoked("already-expired"));
+        assertTrue(denyList.isRevoked("short-lived"));
+        assertEquals(1001, denyList.size());
+
+        // the next revocation a minute later purges the ids that have expired meanwhile
+        now.addAndGet(60_000);
+        denyList.revoke("later", inAnHour);
+
+        assertFalse(denyList.isRevoked("short-lived"));
+        assertTrue(denyList.isRevoked("revoked-0"));
+        assertTrue(denyList.isRevoked("later"));
+        assertEquals(1001, denyList.size());
+    }
+
+    @Test
+    void onlyOneOfConcurrentRevocationsOfATokenSucceeds() throws Exception {
+        TokenDenyList denyList = new TokenDenyList(100);
+        long inAnHour = System.currentTimeMillis() + 3_600_000;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> revocations = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                revocations.add(pool.submit(() -> denyList.revoke("refresh-token", inAnHour)));
+            }
+            int succeeded = 0;
+            for (Future<Boolean> revocation : revocations) {
+                succeeded += revocation.get() ? 1 : 0;
+            }
+            assertEquals(1, succeeded);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertFalse(denyList.revoke("refresh-token", inAnHour));
+    }
+
+    private static String secret() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,76 @@
+package org.ncp.book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.ratelimit.LoadSheddingFilter;
+import org.ncp.bookapi.ratelimit.LoadSheddingProperties;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadSheddingFilterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // one request in flight at a time
+    private final LoadSheddingFilter filter = new LoadSheddingFilter(
+            new LoadSheddingProperties(true, 1, 1, 1, Duration.ofMillis(500)), meterRegistry, now::get);
+
+    @Test
+    void asyncRequestsHoldTheirPermitUntilTheResponseIsComplete() throws Exception {
+        MockHttpServletRequest async = request("/api/async/books/1");
+        filter.doFilter(async, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+
+        assertEquals(1, inFlight());
+        assertEquals(503, call("/api/books/1").getStatus());
+
+        async.getAsyncContext().complete();
+        assertEquals(0, inFlight());
+        assertEquals(200, call("/api/books/1").getStatus());
+    }
+
+    @Test
+    void streamsReleaseTheirPermitWhenTheHandlerReturns() throws Exception {
+        FilterChain stream = (request, response) -> {
+            request.startAsync();
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        };
+        MockHttpServletRequest catalog = request("/api/async/books");
+        filter.doFilter(catalog, new MockHttpServletResponse(), stream);
+
+        assertEquals(0, inFlight());
+        assertEquals(200, call("/api/books/1").getStatus());
+        catalog.getAsyncContext().complete();
+        assertEquals(0, inFlight());
+    }
+
+    @Test
+    void blockingRequestsReleaseTheirPermitWhenTheyReturn() throws Exception {
+        assertEquals(200, call("/api/books/1").getStatus());
+        assertEquals(200, call("/api/books/2").getStatus());
+        assertEquals(0, inFlight());
+    }
+
+    private MockHttpServletResponse call(String uri) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(uri), response, new MockFilterChain());
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setAsyncSupported(true);
+        return request;
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("bookapi.load.inflight").gauge().value();
+    }
+}
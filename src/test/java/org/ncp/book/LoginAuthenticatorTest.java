@@ -0,0 +1,81 @@
+package org.ncp.book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.auth.LoginAuthenticator;
+import org.ncp.bookapi.auth.LoginRejectedException;
+import org.ncp.bookapi.auth.SecurityConfig;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class LoginAuthenticatorTest {
+
+    private final AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LoginAuthenticator loginAuthenticator =
+            new LoginAuthenticator(authenticationManager, meterRegistry, 1, 1, Duration.ofSeconds(5));
+
+    @AfterEach
+    void shutDown() {
+        loginAuthenticator.destroy();
+    }
+
+    @Test
+    void rejectsFastOnceThePoolAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return invocation.getArgument(0);
+        });
+
+        CompletableFuture<?> running = loginAuthenticator.authenticate(token());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<?> queued = loginAuthenticator.authenticate(token());
+        CompletableFuture<?> rejected = loginAuthenticator.authenticate(token());
+
+        ExecutionException ex = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(LoginRejectedException.class, ex.getCause());
+        assertEquals(1, meterRegistry.get("bookapi.login.rejected").counter().count());
+
+        release.countDown();
+        assertNotNull(running.get(5, TimeUnit.SECONDS));
+        assertNotNull(queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void weakerHashesAreUpgradedOnLogin() {
+        var users = new InMemoryUserDetailsManager(User.withUsername("testuser")
+                .password(new BCryptPasswordEncoder(4).encode("testpass"))
+                .roles("USER")
+                .build());
+        var encoder = new SecurityConfig().passwordEncoder(5);
+        DaoAuthenticationProvider provider = new SecurityConfig().authenticationProvider(users, users, encoder);
+
+        provider.authenticate(token());
+
+        String rehashed = users.loadUserByUsername("testuser").getPassword();
+        assertTrue(rehashed.startsWith("$2a$05$"), rehashed);
+        assertTrue(encoder.matches("testpass", rehashed));
+    }
+
+    private static UsernamePasswordAuthenticationToken token() {
+        return new UsernamePasswordAuthenticationToken("testuser", "testpass");
+    }
+}
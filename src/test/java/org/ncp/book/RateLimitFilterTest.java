@@ -0,0 +1,88 @@
+package org.ncp.book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.ratelimit.RateLimitFilter;
+import org.ncp.bookapi.ratelimit.RateLimitProperties;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RateLimitFilterTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitFilter filter = new RateLimitFilter(new RateLimitProperties(true,
+            List.of(new RateLimitProperties.Route("POST", "/api/auth/login", 0.5, 2)),
+            new RateLimitProperties.Budget(10, 3), 1000), meterRegistry, now::get);
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void burstIsAllowedThenRejectedWithRetryAfter() throws Exception {
+        assertEquals(200, login("10.0.0.1").getStatus());
+        assertEquals(200, login("10.0.0.1").getStatus());
+
+        MockHttpServletResponse rejected = login("10.0.0.1");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+        assertEquals(1, meterRegistry.get("bookapi.ratelimit.rejected").tag("route", "/api/auth/login").counter().count());
+
+        // another address has its own bucket
+        assertEquals(200, login("10.0.0.2").getStatus());
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(200, login("10.0.0.1").getStatus());
+    }
+
+    @Test
+    void authenticatedClientsAreLimitedPerUserOnTheDefaultBudget() throws Exception {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("testuser", null, List.of()));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, get("10.0.0." + i).getStatus());
+        }
+        assertEquals(429, get("10.0.0.9").getStatus());
+        // routes have separate buckets
+        assertEquals(200, login("10.0.0.9").getStatus());
+    }
+
+    @Test
+    void actuatorIsNeverLimited() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/actuator/health");
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(request, response, new MockFilterChain());
+            assertEquals(200, response.getStatus());
+        }
+    }
+
+    private MockHttpServletResponse login(String address) throws Exception {
+        return call("POST", "/api/auth/login", address);
+    }
+
+    private MockHttpServletResponse get(String address) throws Exception {
+        return call("GET", "/api/books/1", address);
+    }
+
+    private MockHttpServletResponse call(String method, String uri, String address) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setRemoteAddr(address);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,84 @@
+package org.ncp.book;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.datasource.ReadRouting;
+import org.ncp.bookapi.datasource.ReadYourWrites;
+import org.ncp.bookapi.datasource.ReplicaRoutingDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two in-memory H2 databases stand in for the primary and a replica; each knows its own name.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private final DataSource primary = database("primary");
+    private final DataSource replica = database("replica");
+    private final DataSource dataSource = new LazyConnectionDataSourceProxy(
+            new ReplicaRoutingDataSource(primary, List.of(replica), new ReadYourWrites(Duration.ofMinutes(1), 100)));
+    private final JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+    private final TransactionTemplate readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    private final TransactionTemplate readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+    ReplicaRoutingDataSourceTest() {
+        readOnly.setReadOnly(true);
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplicaAndWritesToThePrimary() {
+        assertEquals("replica", readOnly.execute(status -> databaseName()));
+        assertEquals("primary", readWrite.execute(status -> databaseName()));
+    }
+
+    @Test
+    void readsCanBeForcedOntoThePrimary() {
+        assertEquals("primary", ReadRouting.onPrimary(() -> readOnly.execute(status -> databaseName())));
+        assertEquals("replica", readOnly.execute(status -> databaseName()));
+    }
+
+    @Test
+    void usersReadTheirOwnWritesFromThePrimary() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("writer", null, List.of()));
+        assertEquals("replica", readOnly.execute(status -> databaseName()));
+
+        readWrite.executeWithoutResult(status -> jdbc.update("update whoami set name = name"));
+
+        assertEquals("primary", readOnly.execute(status -> databaseName()));
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken("someone-else", null, List.of()));
+        assertEquals("replica", readOnly.execute(status -> databaseName()));
+    }
+
+    private String databaseName() {
+        return jdbc.queryForObject("select name from whoami", String.class);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table if not exists whoami (name varchar(16))");
+        jdbc.update("delete from whoami");
+        jdbc.update("insert into whoami values (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,106 @@
+package org.ncp.book;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.cache.EncodedBody;
+import org.ncp.bookapi.cache.ResponseBodyCache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseBodyCacheTest {
+
+    private final ResponseBodyCache cache = new ResponseBodyCache(1_000_000, Duration.ofMinutes(10), 0);
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void anInvalidationDoesNotWaitForALoadAndDiscardsIt() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<EncodedBody> slowLoad = pool.submit(() -> cache.getBook(1L, id -> {
+            loading.countDown();
+            await(release);
+            return body("before the delete");
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // the book is deleted while its load is in flight
+        pool.submit(() -> cache.invalidateBook(1L)).get(5, TimeUnit.SECONDS);
+        release.countDown();
+        slowLoad.get(5, TimeUnit.SECONDS);
+
+        AtomicInteger loads = new AtomicInteger();
+        assertNull(cache.getBook(1L, id -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void lookupsOfOtherBooksDoNotWaitForALoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pool.submit(() -> cache.getBook(1L, id -> {
+            loading.countDown();
+            await(release);
+            return body("one");
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        EncodedBody other = pool.submit(() -> cache.getBook(2L, id -> body("two"))).get(5, TimeUnit.SECONDS);
+
+        assertEquals("two", new String(other.json(), StandardCharsets.UTF_8));
+        release.countDown();
+    }
+
+    @Test
+    void loadedBodiesAreServedFromTheCacheAndMissesAreNot() {
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getBook(1L, id -> {
+            loads.incrementAndGet();
+            return body("one");
+        });
+        EncodedBody cached = cache.getBook(1L, id -> {
+            loads.incrementAndGet();
+            return body("again");
+        });
+        cache.getBook(2L, id -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        cache.getBook(2L, id -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        assertEquals("one", new String(cached.json(), StandardCharsets.UTF_8));
+        assertEquals(3, loads.get());
+    }
+
+    private static EncodedBody body(String json) {
+        return new EncodedBody(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
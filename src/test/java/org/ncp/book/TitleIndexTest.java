@@ -0,0 +1,156 @@
+package org.ncp.book;
+
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.search.TitleIndex;
+import org.ncp.bookapi.search.TitleIndexStats;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TitleIndexTest {
+
+    private final TitleIndex index = new TitleIndex();
+
+    @Test
+    void searchIgnoresCaseAndMatchesSubstrings() {
+        index.add(1L, "Harry Potter and the Philosopher's Stone");
+        index.add(2L, "The Hobbit");
+
+        assertEquals(List.of(1L), index.search("POTTER", 0, 10));
+        assertEquals(List.of(1L), index.search("sopher", 0, 10));
+        assertEquals(List.of(), index.search("dragon", 0, 10));
+    }
+
+    @Test
+    void searchRanksTitlePrefixThenWholeWordThenWordPrefixThenSubstring() {
+        index.add(1L, "Hippopotterous");
+        index.add(2L, "Potters Wheel");
+        index.add(3L, "The Potter");
+        index.add(4L, "Potter");
+
+        assertEquals(List.of(4L, 2L, 3L, 1L), index.search("potter", 0, 10));
+    }
+
+    @Test
+    void searchReturnsTheRequestedPage() {
+        index.add(1L, "Book One");
+        index.add(2L, "Book Two");
+        index.add(3L, "Book Six");
+
+        assertEquals(List.of(1L, 2L), index.search("book", 0, 2));
+        assertEquals(List.of(3L), index.search("book", 1, 2));
+        assertEquals(List.of(), index.search("book", 2, 2));
+    }
+
+    @Test
+    void shortKeywordsMatchTheStartOfAWord() {
+        index.add(1L, "It");
+        index.add(2L, "Dune");
+        index.add(3L, "The Italian Job");
+        index.add(4L, "Spirit");
+
+        assertEquals(List.of(1L, 3L), index.search("it", 0, 10));
+        assertEquals(List.of(2L), index.search("D", 0, 10));
+        assertEquals(List.of(), index.search("t ", 0, 10));
+    }
+
+    @Test
+    void writesDuringARebuildAreReplayedOnTheRebuiltIndex() {
+        index.add(1L, "The Hobbit");
+        TitleIndex rebuilt = index.beginRebuild();
+        rebuilt.add(1L, "The Hobbit");
+        rebuilt.add(2L, "Dune");
+        index.add(3L, "Hobbit Tales");
+        index.remove(2L);
+
+        assertEquals(List.of(3L, 1L), index.search("hobbit", 0, 10));
+        index.install(rebuilt);
+
+        assertEquals(List.of(3L, 1L), index.search("hobbit", 0, 10));
+        assertEquals(List.of(), index.search("dune", 0, 10));
+    }
+
+    @Test
+    void removedAndReindexedTitlesAreKeptInSync() {
+        index.add(1L, "The Hobbit");
+        index.add(1L, "The Silmarillion");
+        index.add(2L, "Hobbit Tales");
+        index.remove(2L);
+
+        assertEquals(List.of(), index.search("hobbit", 0, 10));
+        assertEquals(List.of(1L), index.search("silmarillion", 0, 10));
+    }
+
+    @Test
+    void fuzzySearchToleratesTyposInEveryWord() {
+        index.add(1L, "Harry Potter and the Philosopher's Stone");
+        index.add(2L, "Harry Potter");
+        index.add(3L, "The Lord of the Rings");
+
+        assertEquals(List.of(2L, 1L), index.fuzzySearch("Hary Poter", 0, 10));
+        assertEquals(List.of(3L), index.fuzzySearch("lord of teh rngs", 0, 10));
+        assertEquals(List.of(), index.fuzzySearch("harry dragon", 0, 10));
+    }
+
+    @Test
+    void fuzzySearchRanksFewerEditsFirst() {
+        index.add(1L, "Potted Plants");
+        index.add(2L, "Potter");
+
+        assertEquals(List.of(2L, 1L), index.fuzzySearch("potter", 0, 10));
+        assertEquals(List.of(1L), index.fuzzySearch("potter", 1, 1));
+    }
+
+    @Test
+    void fuzzySearchFollowsRemovals() {
+        index.add(1L, "Harry Potter");
+        index.remove(1L);
+
+        assertEquals(List.of(), index.fuzzySearch("hary poter", 0, 10));
+    }
+
+    @Test
+    void fuzzySearchCountsSwapsAsOneEditAndStopsAtTheBound() {
+        index.add(1L, "The Hobbit");
+        index.add(2L, "Sitting Bull");
+
+        assertEquals(List.of(1L), index.fuzzySearch("teh", 0, 10));
+        assertEquals(List.of(1L), index.fuzzySearch("hobibt", 0, 10));
+        assertEquals(List.of(2L), index.fuzzySearch("sittin", 0, 10));
+        // three edits away, one more than a six-letter word allows
+        assertEquals(List.of(), index.fuzzySearch("kitten", 0, 10));
+    }
+
+    @Test
+    void fuzzySearchOnlyComparesWordsSharingEnoughTrigrams() {
+        index.add(1L, "Harry");
+        long id = 2;
+        // "hxzy" shares "  h" and "y  " with "hary" but is two edits away
+        for (char second = 'b'; second <= 'z'; second++) {
+            for (char third = 'b'; third <= 'z'; third++) {
+                if (third != 'r') {
+                    index.add(id++, "h" + second + third + "y");
+                }
+            }
+        }
+
+        assertEquals(List.of(1L), index.fuzzySearch("hary", 0, 10));
+        assertEquals(1, index.stats().fuzzyWordsVerified());
+    }
+
+    @Test
+    void statsReportIndexSize() {
+        index.add(1L, "abcd");
+        index.add(2L, "abce");
+
+        TitleIndexStats stats = index.stats();
+
+        assertEquals(2, stats.documents());
+        assertEquals(3, stats.terms()); // abc, bcd, bce
+        assertEquals(2, stats.words());
+        assertEquals(4, stats.postings());
+        assertEquals(2, stats.largestPosting());
+        assertTrue(stats.estimatedBytes() > 0);
+    }
+}
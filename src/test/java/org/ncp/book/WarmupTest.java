@@ -0,0 +1,31 @@
+package org.ncp.book;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.ncp.bookapi.services.BookService.BookService;
+import org.ncp.bookapi.startup.Warmup;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class WarmupTest {
+
+    private final BookService bookService = mock(BookService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Warmup warmup = new Warmup(bookService, meterRegistry, 100);
+
+    @Test
+    void notReadyUntilIndexesAndCacheAreWarm() {
+        when(bookService.rebuildIndexes(100)).thenReturn(42L);
+
+        assertEquals(Status.OUT_OF_SERVICE, warmup.health().getStatus());
+
+        warmup.warmUp();
+
+        assertEquals(Status.UP, warmup.health().getStatus());
+        assertEquals(42L, warmup.health().getDetails().get("books"));
+        assertFalse(Double.isNaN(meterRegistry.get("bookapi.startup.ready").gauge().value()));
+        verify(bookService).rebuildIndexes(100);
+    }
+}